@@ -1,8 +1,12 @@
 package com.rac.sims.util;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.management.BadStringOperationException;
 
@@ -66,6 +70,20 @@ import javax.management.BadStringOperationException;
  * Exception in thread "main" java.lang.NullPointerException: var1 is NULL (need to call Jim)
  * } 
  * 
+ * The message is only formatted when a check fails, so a passing check costs no
+ * more than the comparison itself. Checks with up to three arguments also avoid
+ * the varargs array. Where the message is expensive to build in some other way,
+ * a {@code Supplier<String>} may be passed instead of a message:
+ * 
+ * {@code
+ * Throw.ifNull(var1, () -> describe(request));
+ * }
+ * 
+ * Because of these overloads a bare {@code null} message, as in
+ * {@code Throw.ifNull(var, null)}, no longer compiles; it matches both the
+ * String and the Supplier form. Cast it, {@code (String)null}, or leave the
+ * message out.
+ * 
  * Normally use of these methods will throw either a {@see NullPointerException}
  * or {@see IllegalArgumentException}, depending upon the method invoked, and the
  * condition of the variable being checked.
@@ -83,6 +101,23 @@ import javax.management.BadStringOperationException;
  *      .ifNull(var2,"var2","Audrey")
  *      .ifNull(var3,"var3","Mickey");
  * {@code}
+ * 
+ * A custom exception is normally thrown wrapped in a {@see RuntimeException}.
+ * Where rejections are frequent enough for their cost to matter, the checks
+ * may instead be prefixed with {@code stackless()}, which throws the custom
+ * exception itself, unwrapped:
+ * 
+ * {@code}
+ * Throw.exception( MyCustomException.class ).stackless()
+ *      .ifNull(var);
+ * {@code}
+ * 
+ * {@code stackless()} only skips the stack trace for an exception that declares
+ * a public (String,Throwable,boolean,boolean) constructor. It does not for
+ * ordinary custom exceptions: {@see Exception} keeps that constructor
+ * protected, and so do most of its subclasses. Such an exception is built with
+ * its (String) constructor as usual and thrown unwrapped, with its full stack
+ * trace, so only the wrapping is saved.
  *
  * @author Jack Carter (jack.carter@shinobigroup.com)
  */
@@ -100,13 +135,13 @@ public class Throw {
 	
 	// Without any message
 	
-	public static Thrower ifNull(Object o)     { return ifNull(o,null); }
-	public static Thrower ifEmpty(String s)    { return ifEmpty(s,null); }
-	public static Thrower ifBlank(String s)    { return ifBlank(s,null); }
+	public static Thrower ifNull(Object o)     { return ifNull(o,(String)null); }
+	public static Thrower ifEmpty(String s)    { return ifEmpty(s,(String)null); }
+	public static Thrower ifBlank(String s)    { return ifBlank(s,(String)null); }
 	
-	public static Thrower ifNotNull(Object o)  { return ifNotNull(o,null); }
-	public static Thrower ifNotEmpty(String s) { return ifNotEmpty(s,null); }
-	public static Thrower ifNotBlank(String s) { return ifNotBlank(s,null); }
+	public static Thrower ifNotNull(Object o)  { return ifNotNull(o,(String)null); }
+	public static Thrower ifNotEmpty(String s) { return ifNotEmpty(s,(String)null); }
+	public static Thrower ifNotBlank(String s) { return ifNotBlank(s,(String)null); }
 	
 	// Including a message
 	
@@ -118,6 +153,16 @@ public class Throw {
 	public static Thrower ifNotEmpty(String s,String msg) { return new Thrower().ifNotEmpty(s,msg); }	
 	public static Thrower ifNotBlank(String s,String msg) { return new Thrower().ifNotBlank(s,msg); }
 	
+	// Including a message built only on failure
+	
+	public static Thrower ifNull(Object o,Supplier<String> msg)     { return new Thrower().ifNull(o,msg); }
+	public static Thrower ifEmpty(String s,Supplier<String> msg)    { return new Thrower().ifEmpty(s,msg); }
+	public static Thrower ifBlank(String s,Supplier<String> msg)    { return new Thrower().ifBlank(s,msg); }
+	
+	public static Thrower ifNotNull(Object o,Supplier<String> msg)  { return new Thrower().ifNotNull(o,msg); }
+	public static Thrower ifNotEmpty(String s,Supplier<String> msg) { return new Thrower().ifNotEmpty(s,msg); }
+	public static Thrower ifNotBlank(String s,Supplier<String> msg) { return new Thrower().ifNotBlank(s,msg); }
+	
 	// Implementation Support
 	
 	/**
@@ -138,63 +183,81 @@ public class Throw {
 		// NULL checks
 		
 		public Thrower ifNull(Object o) {
-			ifNull(o,null);
+			ifNull(o,(String)null);
 			return this;
 		}
 
 		public Thrower ifNotNull(Object o) {
-			ifNotNull(o,null);
+			ifNotNull(o,(String)null);
 			return this;
 		}
 		
 		public Thrower ifNull(Object o,String msg) {
-		    if (o == null) nullPointer(msg);
+		    if (isNull(o)) nullPointer(msg);
 			return this;
 		}
 		
 		public Thrower ifNotNull(Object o,String msg) {
-		    if (o != null) illegalArgument(msg);
+		    if (isNull(o) == false) illegalArgument(msg);
+			return this;
+		}
+		
+		public Thrower ifNull(Object o,Supplier<String> msg) {
+		    if (isNull(o)) nullPointer(msg.get());
+			return this;
+		}
+		
+		public Thrower ifNotNull(Object o,Supplier<String> msg) {
+		    if (isNull(o) == false) illegalArgument(msg.get());
 			return this;
 		}
 		
 		// EMTPY checks
 		
 		public Thrower ifEmpty(String s) {
-			ifEmpty(s,null);
+			ifEmpty(s,(String)null);
 			return this;
 		}
 		
 		public Thrower ifNotEmpty(String s) {
-			ifNotEmpty(s,null);
+			ifNotEmpty(s,(String)null);
 			return this;
 		}
 	
 		public Thrower ifEmpty(String s,String msg) {
-			if (s == null) nullPointer(msg);
-			if (s.length() == 0) illegalArgument(msg);
+			if (isEmpty(s)) missing(s,msg);
 			return this;
 		}
 		
 		public Thrower ifNotEmpty(String s,String msg) {
-			if (s != null && s.length() != 0) illegalArgument(msg);
+			if (isEmpty(s) == false) illegalArgument(msg);
+			return this;
+		}
+		
+		public Thrower ifEmpty(String s,Supplier<String> msg) {
+			if (isEmpty(s)) missing(s,msg.get());
+			return this;
+		}
+		
+		public Thrower ifNotEmpty(String s,Supplier<String> msg) {
+			if (isEmpty(s) == false) illegalArgument(msg.get());
 			return this;
 		}
 		
 		// BLANK checks
 		
 		public Thrower ifBlank(String s) {
-			ifBlank(s,null);
+			ifBlank(s,(String)null);
 			return this;
 		}
 		
 		public Thrower ifNotBlank(String s) {
-			ifNotBlank(s,null);
+			ifNotBlank(s,(String)null);
 			return this;
 		}
 	
 		public Thrower ifBlank(String s,String msg) {
-			if (s == null) nullPointer(msg);
-			if (isBlank(s)) illegalArgument(msg);
+			if (isBlank(s)) missing(s,msg);
 			return this;
 		}
 		
@@ -203,7 +266,29 @@ public class Throw {
 			return this;
 		}
 		
-		// Implementation support
+		public Thrower ifBlank(String s,Supplier<String> msg) {
+			if (isBlank(s)) missing(s,msg.get());
+			return this;
+		}
+		
+		public Thrower ifNotBlank(String s,Supplier<String> msg) {
+			if (isBlank(s) == false) illegalArgument(msg.get());
+			return this;
+		}
+		
+		// Conditions
+		//
+		// Each check fails when its condition holds, or for the ifNot forms when it
+		// does not. MessageDecorator tests the same conditions before formatting a
+		// message, so a subclass that overrides one changes both paths alike.
+		
+		protected boolean isNull(Object o) {
+			return o == null;
+		}
+		
+		protected boolean isEmpty(String s) {
+			return s == null || s.length() == 0;
+		}
 		
 		protected boolean isBlank(String s) {
 	        int strLen;
@@ -218,6 +303,17 @@ public class Throw {
 	        return true;			
 		}
 		
+		// Implementation support
+		
+		/**
+		 * Throws for a missing String: a null one is a null pointer, an empty
+		 * or blank one an illegal argument.
+		 */
+		private void missing(String s,String msg) {
+			if (s == null) nullPointer(msg);
+			else illegalArgument(msg);
+		}
+		
 		protected void nullPointer(String msg) {
 			throw new NullPointerException(msg);
 		}
@@ -238,7 +334,34 @@ public class Throw {
 	 */
 	static public class CustomThrower extends Thrower {
 		
+		private static final MethodType FACTORY = MethodType.methodType(Exception.class, String.class);
+		
+		/**
+		 * The (String) constructor of each custom exception, or null when it has
+		 * none, looked up once per class.
+		 */
+		private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+			@Override
+			protected MethodHandle computeValue(Class<?> type) {
+				return constructor(type, false);
+			}
+		};
+		
+		/**
+		 * The (String,Throwable,boolean,boolean) constructor of each custom exception
+		 * bound to build it without a cause, suppression or stack trace, falling
+		 * back to its (String) constructor when it has no such public constructor.
+		 */
+		private static final ClassValue<MethodHandle> STACKLESS_CONSTRUCTORS = new ClassValue<MethodHandle>() {
+			@Override
+			protected MethodHandle computeValue(Class<?> type) {
+				MethodHandle stackless = constructor(type, true);
+				return stackless != null ? stackless : CONSTRUCTORS.get(type);
+			}
+		};
+		
 		private Class<? extends Exception> exception;
+		private boolean stackless;
 		
 		public CustomThrower() {}
 		
@@ -246,13 +369,27 @@ public class Throw {
 			this.exception = exception;
 		}
 		
+		// Prefixes
+		
+		/**
+		 * Throws the custom exception itself rather than wrapping it in a
+		 * {@see RuntimeException}. It is built without a stack trace only if it
+		 * has a public (String,Throwable,boolean,boolean) constructor; otherwise,
+		 * as for most custom exceptions, it falls back to the (String) constructor
+		 * and keeps its stack trace.
+		 */
+		public CustomThrower stackless() {
+			this.stackless = true;
+			return this;
+		}
+		
 		public CustomThrower ifTrue(boolean expr) {
-		    ifTrue(expr,null);
+		    ifTrue(expr,(String)null);
 			return this;
 		}
 		
 		public CustomThrower ifFalse(boolean expr) {
-			ifFalse(expr,null);
+			ifFalse(expr,(String)null);
 			return this;
 		}
 		
@@ -292,25 +429,59 @@ public class Throw {
 		 */
 		private void throwException(String msg,DefaultThrowFunction defaultBehavior) {
 			// short-circuit our behavior if no custom exception is specified
-			if (this.exception == null)
+			if (this.exception == null) {
 				defaultBehavior.run(msg);
+				return;
+			}
 			
 			// OK then, try and create an instance of the custom exception
-			else try {
-		    	throw new RuntimeException(this.exception.getConstructor(String.class).newInstance(msg));
-		    } catch (InstantiationException e) {
-		    	defaultBehavior.run(msg);
-		    } catch (IllegalAccessException e) {
-		    	defaultBehavior.run(msg);
-		    } catch (IllegalArgumentException e) {
-		    	defaultBehavior.run(msg);
-		    } catch (InvocationTargetException e) {
-		    	defaultBehavior.run(msg);
-		    } catch (NoSuchMethodException e) {
-		    	defaultBehavior.run(msg);
-		    } catch (SecurityException e) {
-		    	defaultBehavior.run(msg);
-		    }
+			Exception custom = newException(msg);
+			if (custom == null)
+				defaultBehavior.run(msg);
+			else if (stackless)
+				CustomThrower.<RuntimeException>sneakyThrow(custom);
+			else
+				throw new RuntimeException(custom);
+		}
+		
+		private Exception newException(String msg) {
+			MethodHandle factory = (stackless ? STACKLESS_CONSTRUCTORS : CONSTRUCTORS).get(this.exception);
+			if (factory == null)
+				return null;
+			try {
+				return (Exception)factory.invokeExact(msg);
+			} catch (Throwable t) {
+				return null;
+			}
+		}
+		
+		/**
+		 * @return a handle of type {@code (String)Exception} on the public constructor,
+		 * or null if the exception has none
+		 */
+		private static MethodHandle constructor(Class<?> type, boolean stackless) {
+			try {
+				if (stackless == false)
+					return MethodHandles.publicLookup()
+						.findConstructor(type, MethodType.methodType(void.class, String.class))
+						.asType(FACTORY);
+				MethodHandle constructor = MethodHandles.publicLookup()
+					.findConstructor(type, MethodType.methodType(void.class, String.class, Throwable.class, boolean.class, boolean.class));
+				return MethodHandles.insertArguments(constructor, 1, null, false, false).asType(FACTORY);
+			} catch (NoSuchMethodException e) {
+				return null;
+			} catch (IllegalAccessException e) {
+				return null;
+			}
+		}
+		
+		/**
+		 * Throws a checked exception without declaring it, the compiler taking
+		 * {@code T} to be an unchecked exception.
+		 */
+		@SuppressWarnings("unchecked")
+		private static <T extends Throwable> void sneakyThrow(Throwable t) throws T {
+			throw (T)t;
 		}
 
 	}
@@ -334,34 +505,159 @@ public class Throw {
 		}
 		
 		// Instance Methods
-		
+		//
+		// Each check tests the thrower's own condition first and only formats the
+		// message when it fails, handing the formatted message to the thrower to
+		// throw. The
+		// fixed-arity forms spare the passing path the varargs array as well.
+		
+		public MessageDecorator ifNull(Object o) {
+			if (thrower.isNull(o)) thrower.ifNull(o,format());
+			return this;
+		}
+
+		public MessageDecorator ifNull(Object o, Object a1) {
+			if (thrower.isNull(o)) thrower.ifNull(o,format(a1));
+			return this;
+		}
+
+		public MessageDecorator ifNull(Object o, Object a1, Object a2) {
+			if (thrower.isNull(o)) thrower.ifNull(o,format(a1,a2));
+			return this;
+		}
+
+		public MessageDecorator ifNull(Object o, Object a1, Object a2, Object a3) {
+			if (thrower.isNull(o)) thrower.ifNull(o,format(a1,a2,a3));
+			return this;
+		}
+
 		public MessageDecorator ifNull(Object o, Object... arguments) {
-			thrower.ifNull(o,format(arguments));
+			if (thrower.isNull(o)) thrower.ifNull(o,format(arguments));
+			return this;
+		}
+
+		public MessageDecorator ifEmpty(String s) {
+			if (thrower.isEmpty(s)) thrower.ifEmpty(s,format());
+			return this;
+		}
+
+		public MessageDecorator ifEmpty(String s, Object a1) {
+			if (thrower.isEmpty(s)) thrower.ifEmpty(s,format(a1));
+			return this;
+		}
+
+		public MessageDecorator ifEmpty(String s, Object a1, Object a2) {
+			if (thrower.isEmpty(s)) thrower.ifEmpty(s,format(a1,a2));
+			return this;
+		}
+
+		public MessageDecorator ifEmpty(String s, Object a1, Object a2, Object a3) {
+			if (thrower.isEmpty(s)) thrower.ifEmpty(s,format(a1,a2,a3));
 			return this;
 		}
 
 		public MessageDecorator ifEmpty(String s, Object... arguments) {
-			thrower.ifEmpty(s,format(arguments));
+			if (thrower.isEmpty(s)) thrower.ifEmpty(s,format(arguments));
+			return this;
+		}
+
+		public MessageDecorator ifBlank(String s) {
+			if (thrower.isBlank(s)) thrower.ifBlank(s,format());
+			return this;
+		}
+
+		public MessageDecorator ifBlank(String s, Object a1) {
+			if (thrower.isBlank(s)) thrower.ifBlank(s,format(a1));
+			return this;
+		}
+
+		public MessageDecorator ifBlank(String s, Object a1, Object a2) {
+			if (thrower.isBlank(s)) thrower.ifBlank(s,format(a1,a2));
+			return this;
+		}
+
+		public MessageDecorator ifBlank(String s, Object a1, Object a2, Object a3) {
+			if (thrower.isBlank(s)) thrower.ifBlank(s,format(a1,a2,a3));
 			return this;
 		}
 
 		public MessageDecorator ifBlank(String s, Object... arguments) {
-			thrower.ifBlank(s,format(arguments));
+			if (thrower.isBlank(s)) thrower.ifBlank(s,format(arguments));
+			return this;
+		}
+
+		public MessageDecorator ifNotNull(Object o) {
+			if (thrower.isNull(o) == false) thrower.ifNotNull(o,format());
+			return this;
+		}
+
+		public MessageDecorator ifNotNull(Object o, Object a1) {
+			if (thrower.isNull(o) == false) thrower.ifNotNull(o,format(a1));
+			return this;
+		}
+
+		public MessageDecorator ifNotNull(Object o, Object a1, Object a2) {
+			if (thrower.isNull(o) == false) thrower.ifNotNull(o,format(a1,a2));
+			return this;
+		}
+
+		public MessageDecorator ifNotNull(Object o, Object a1, Object a2, Object a3) {
+			if (thrower.isNull(o) == false) thrower.ifNotNull(o,format(a1,a2,a3));
 			return this;
 		}
 
 		public MessageDecorator ifNotNull(Object o, Object... arguments) {
-			thrower.ifNotNull(o,format(arguments));
+			if (thrower.isNull(o) == false) thrower.ifNotNull(o,format(arguments));
 			return this;
 		}
-		
+
+		public MessageDecorator ifNotEmpty(String s) {
+			if (thrower.isEmpty(s) == false) thrower.ifNotEmpty(s,format());
+			return this;
+		}
+
+		public MessageDecorator ifNotEmpty(String s, Object a1) {
+			if (thrower.isEmpty(s) == false) thrower.ifNotEmpty(s,format(a1));
+			return this;
+		}
+
+		public MessageDecorator ifNotEmpty(String s, Object a1, Object a2) {
+			if (thrower.isEmpty(s) == false) thrower.ifNotEmpty(s,format(a1,a2));
+			return this;
+		}
+
+		public MessageDecorator ifNotEmpty(String s, Object a1, Object a2, Object a3) {
+			if (thrower.isEmpty(s) == false) thrower.ifNotEmpty(s,format(a1,a2,a3));
+			return this;
+		}
+
 		public MessageDecorator ifNotEmpty(String s, Object... arguments) {
-			thrower.ifNotEmpty(s,format(arguments));
+			if (thrower.isEmpty(s) == false) thrower.ifNotEmpty(s,format(arguments));
+			return this;
+		}
+
+		public MessageDecorator ifNotBlank(String s) {
+			if (thrower.isBlank(s) == false) thrower.ifNotBlank(s,format());
+			return this;
+		}
+
+		public MessageDecorator ifNotBlank(String s, Object a1) {
+			if (thrower.isBlank(s) == false) thrower.ifNotBlank(s,format(a1));
+			return this;
+		}
+
+		public MessageDecorator ifNotBlank(String s, Object a1, Object a2) {
+			if (thrower.isBlank(s) == false) thrower.ifNotBlank(s,format(a1,a2));
+			return this;
+		}
+
+		public MessageDecorator ifNotBlank(String s, Object a1, Object a2, Object a3) {
+			if (thrower.isBlank(s) == false) thrower.ifNotBlank(s,format(a1,a2,a3));
 			return this;
 		}
 
 		public MessageDecorator ifNotBlank(String s, Object... arguments) {
-			thrower.ifNotBlank(s,format(arguments));
+			if (thrower.isBlank(s) == false) thrower.ifNotBlank(s,format(arguments));
 			return this;
 		}
 
@@ -384,6 +680,34 @@ public class Throw {
 		Throw.withMessage("").ifNull(null).exception( BadStringOperationException.class );
 		 */
 
+		/* Stackless custom exceptions are thrown unwrapped, without a stack trace
+		   only when they have a public (String,Throwable,boolean,boolean) constructor */
+		
+		{
+			boolean assume = false;
+			try {
+				Throw.exception( LambdaConversionException.class ).stackless()
+					.ifNull(null, "NULL");
+			} catch (Throwable t) {
+				if (t instanceof LambdaConversionException && t.getMessage().equals("NULL")
+					&& t.getStackTrace().length == 0) assume = true;
+			} finally {
+				assert assume;
+			}
+		}
+		
+		{
+			boolean assume = false;
+			try {
+				Throw.exception( BadStringOperationException.class ).stackless()
+					.ifNull(null, "NULL");
+			} catch (Throwable t) {
+				if (t instanceof BadStringOperationException && t.getStackTrace().length > 0) assume = true;
+			} finally {
+				assert assume;
+			}
+		}
+		
 		/* Basic tests */
 		
 		{
@@ -611,6 +935,41 @@ public class Throw {
 			}
 		}
 		
+		/* Test that messages are only formatted, or supplied, on failure */
+		
+		{
+			boolean assume = true;
+			int[] formatted = new int[1];
+			Object counted = new Object() {
+				@Override
+				public String toString() { return String.valueOf(++formatted[0]); }
+			};
+			Throw.withMessage("%s is NULL")
+				.ifNull("", counted)
+				.ifEmpty(" ", counted, counted)
+				.ifBlank("123", counted, counted, counted)
+				.ifNotNull(null, counted, counted, counted, counted)
+				.ifNotEmpty("", counted)
+				.ifNotBlank(" ", counted);
+			Throw.ifNull("", () -> { throw new AssertionError("supplied"); })
+				.ifEmpty(" ", () -> { throw new AssertionError("supplied"); })
+				.ifNotBlank(" ", () -> { throw new AssertionError("supplied"); });
+			if (formatted[0] != 0) assume = false;
+			try {
+				Throw.withMessage("%s is NULL").ifNull(null, counted);
+				assume = false;
+			} catch (NullPointerException ex) {
+				if (ex.getMessage().equals("1 is NULL") == false) assume = false;
+			}
+			try {
+				Throw.ifBlank(" ", () -> "BLANK");
+				assume = false;
+			} catch (IllegalArgumentException ex) {
+				if (ex.getMessage().equals("BLANK") == false) assume = false;
+			}
+			assert assume;
+		}
+		
 		Throw.withMessage("FAILED")
 			.ifEmpty("")
 			.ifBlank(" ")
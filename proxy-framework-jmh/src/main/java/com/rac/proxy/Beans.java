@@ -0,0 +1,63 @@
+package com.rac.proxy;
+
+/**
+ * Beans holds four otherwise identical implementations of {@link IBean}, so
+ * benchmarks can drive a call site with more receiver types than the JIT will
+ * inline. Each implements the interface itself rather than inheriting it, so
+ * every receiver type has its own {@code getText} and class hierarchy analysis
+ * cannot reduce the call site to a single target.
+ */
+public class Beans {
+
+	public static class First implements IBean {
+		private String text;
+		private int count;
+		
+		public First(String text)            { this.text = text; }
+		public String getText()              { return text; }
+		public void setText(String text)     { this.text = text; }
+		public int getCount()                { return count; }
+		public void setCount(int count)      { this.count = count; }
+	}
+	
+	public static class Second implements IBean {
+		private String text;
+		private int count;
+		
+		public Second(String text)           { this.text = text; }
+		public String getText()              { return text; }
+		public void setText(String text)     { this.text = text; }
+		public int getCount()                { return count; }
+		public void setCount(int count)      { this.count = count; }
+	}
+	
+	public static class Third implements IBean {
+		private String text;
+		private int count;
+		
+		public Third(String text)            { this.text = text; }
+		public String getText()              { return text; }
+		public void setText(String text)     { this.text = text; }
+		public int getCount()                { return count; }
+		public void setCount(int count)      { this.count = count; }
+	}
+	
+	public static class Fourth implements IBean {
+		private String text;
+		private int count;
+		
+		public Fourth(String text)           { this.text = text; }
+		public String getText()              { return text; }
+		public void setText(String text)     { this.text = text; }
+		public int getCount()                { return count; }
+		public void setCount(int count)      { this.count = count; }
+	}
+	
+	/**
+	 * @return one instance of each implementation
+	 */
+	public static IBean[] mixed(String text) {
+		return new IBean[] { new First(text), new Second(text), new Third(text), new Fourth(text) };
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.rac.proxy;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkMain runs the benchmarks with the usual JMH command line, always
+ * adding the GC profiler so every result reports bytes allocated per call.
+ *
+ * {@code
+ * java -jar target/benchmarks.jar                     # everything
+ * java -jar target/benchmarks.jar Dispatch -f 1 -i 3  # one class, fewer iterations
+ * }
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
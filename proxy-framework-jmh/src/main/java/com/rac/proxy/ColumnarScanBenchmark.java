@@ -0,0 +1,105 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ColumnarScanBenchmark compares a filter-then-sum over a list of beans with
+ * the same query against a {@link ColumnarTable} of the same records. The list
+ * is shuffled after filling, as a long-lived heap would be.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarScanBenchmark {
+
+	@Param({ "1000000" })
+	int records;
+	
+	List<IBean> list;
+	ColumnarTable<IBean> table;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		list = new ArrayList<IBean>(records);
+		table = ColumnarTable.create(IBean.class, records);
+		ColumnarTable.Cursor<IBean> cursor = table.cursor();
+		for (int i = 0; i < records; i++) {
+			IBean bean = new Beans.First(i % 3 == 0 ? "Texas" : "doit");
+			bean.setCount(random.nextInt(1000));
+			list.add(bean);
+			cursor.moveTo(table.add());
+			cursor.get().setText(bean.getText());
+			cursor.get().setCount(bean.getCount());
+		}
+		Collections.shuffle(list, random);
+	}
+	
+	@Benchmark
+	public long listLoop() {
+		long sum = 0;
+		for (IBean bean : list) {
+			if (bean.getCount() > 500)
+				sum += bean.getCount();
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	public long listParallelStream() {
+		return list.parallelStream().mapToLong(IBean::getCount).filter(count -> count > 500).sum();
+	}
+	
+	@Benchmark
+	public long columnar() {
+		return table.longStats("count", table.filterLong("count", count -> count > 500)).getSum();
+	}
+	
+	@Benchmark
+	public long listSum() {
+		long sum = 0;
+		for (IBean bean : list)
+			sum += bean.getCount();
+		return sum;
+	}
+	
+	@Benchmark
+	public long columnarSum() {
+		return table.longStats("count").getSum();
+	}
+	
+	@Benchmark
+	public long columnarString() {
+		return table.filterString("text", "Texas"::equals).length;
+	}
+	
+	@Benchmark
+	public long listString() {
+		long matches = 0;
+		for (IBean bean : list) {
+			if ("Texas".equals(bean.getText()))
+				matches++;
+		}
+		return matches;
+	}
+
+}
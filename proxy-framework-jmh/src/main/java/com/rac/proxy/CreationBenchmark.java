@@ -0,0 +1,75 @@
+package com.rac.proxy;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CreationBenchmark measures how many proxies can be made per second, against
+ * plain allocation of the bean being wrapped. {@code newProxyInstance} is the
+ * path {@code AbstractProxy.create} used before it went through
+ * {@link ProxyFactory}; {@code createWithFactory} holds the factory in a field.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CreationBenchmark {
+
+	static final String TEXT = "doit";
+	
+	IBean bean;
+	IBean copyOnWrite;
+	ProxyFactory<IBean> factory;
+	
+	@Setup
+	public void setup() {
+		bean = new Beans.First(TEXT);
+		copyOnWrite = CopyOnWriteProxy.create(IBean.class, bean);
+		copyOnWrite.setText("Texas");
+		factory = ProxyFactory.of(IBean.class);
+	}
+	
+	@Benchmark
+	public IBean allocateBean() {
+		return new Beans.First(TEXT);
+	}
+	
+	@Benchmark
+	public IBean createAbstractProxy() {
+		return AbstractProxy.create(IBean.class, new AbstractProxy(bean));
+	}
+	
+	@Benchmark
+	public IBean newProxyInstance() {
+		return (IBean)Proxy.newProxyInstance(bean.getClass().getClassLoader(), new Class<?>[] { IBean.class }, new AbstractProxy(bean));
+	}
+	
+	@Benchmark
+	public IBean createWithFactory() {
+		return factory.newInstance(new AbstractProxy(bean));
+	}
+	
+	@Benchmark
+	public IBean createCopyOnWrite() {
+		return CopyOnWriteProxy.create(IBean.class, bean);
+	}
+	
+	@Benchmark
+	public IBean forkCopyOnWrite() {
+		return CopyOnWriteProxy.fork(copyOnWrite);
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.rac.proxy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * DispatchBenchmark measures the cost of a getter called directly, through an
+ * {@link AbstractProxy} (one reflective {@code Method.invoke}), and through a
+ * {@link CopyOnWriteProxy} both before and after the property is overridden.
+ *
+ * The monomorphic variants call one receiver type per call site. The
+ * megamorphic variants cycle through four receiver types, the four unrelated
+ * bean classes: called directly, and through four {@link AbstractProxy}
+ * handlers, one per bean class. Every proxied variant uses the same handler
+ * type, so the two proxied variants differ only in the number of target
+ * types behind the handler's reflective call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+	static final String TEXT = "doit";
+	
+	IBean direct;
+	IBean abstractProxy;
+	IBean copyOnWrite;
+	IBean copyOnWriteOverridden;
+	
+	IBean[] directMixed;
+	IBean[] proxiesMonomorphic;
+	IBean[] proxiesMegamorphic;
+	
+	@Setup
+	public void setup() {
+		direct = new Beans.First(TEXT);
+		abstractProxy = AbstractProxy.create(IBean.class, new AbstractProxy(new Beans.First(TEXT)));
+		copyOnWrite = CopyOnWriteProxy.create(IBean.class, new Beans.First(TEXT));
+		copyOnWriteOverridden = CopyOnWriteProxy.create(IBean.class, new Beans.First(TEXT));
+		copyOnWriteOverridden.setText("Texas");
+		
+		directMixed = Beans.mixed(TEXT);
+		proxiesMonomorphic = new IBean[4];
+		for (int i = 0; i < 4; i++)
+			proxiesMonomorphic[i] = AbstractProxy.create(IBean.class, new AbstractProxy(new Beans.First(TEXT)));
+		proxiesMegamorphic = new IBean[4];
+		for (int i = 0; i < 4; i++)
+			proxiesMegamorphic[i] = AbstractProxy.create(IBean.class, new AbstractProxy(directMixed[i]));
+	}
+	
+	@Benchmark
+	public String direct() {
+		return direct.getText();
+	}
+	
+	@Benchmark
+	public String abstractProxy() {
+		return abstractProxy.getText();
+	}
+	
+	@Benchmark
+	public String copyOnWriteReadThrough() {
+		return copyOnWrite.getText();
+	}
+	
+	@Benchmark
+	public String copyOnWriteOverridden() {
+		return copyOnWriteOverridden.getText();
+	}
+	
+	@Benchmark
+	public void directMegamorphic(Blackhole blackhole) {
+		for (IBean bean : directMixed)
+			blackhole.consume(bean.getText());
+	}
+	
+	@Benchmark
+	public void proxyMonomorphic(Blackhole blackhole) {
+		for (IBean bean : proxiesMonomorphic)
+			blackhole.consume(bean.getText());
+	}
+	
+	@Benchmark
+	public void proxyMegamorphic(Blackhole blackhole) {
+		for (IBean bean : proxiesMegamorphic)
+			blackhole.consume(bean.getText());
+	}
+
+}
@@ -0,0 +1,11 @@
+package com.rac.proxy;
+
+/**
+ * IBean is the interface every benchmark calls through.
+ */
+public interface IBean {
+	public String getText();
+	public void setText(String text);
+	public int getCount();
+	public void setCount(int count);
+}
@@ -0,0 +1,75 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ShardingBenchmark runs contended updates on a counter map guarded by one
+ * lock, first through a plain forwarding proxy and then through a
+ * {@link ShardingProxy} over several copies. Run it with at least as many
+ * threads as shards (the default is 4) to see the lock stop being the limit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ShardingBenchmark {
+
+	public interface ICounters {
+		public void increment(Integer key);
+	}
+	
+	public static class Counters implements ICounters {
+		private final Map<Integer,Integer> counts = new HashMap<Integer,Integer>();
+		
+		public synchronized void increment(Integer key) {
+			counts.merge(key, 1, Integer::sum);
+		}
+	}
+	
+	@Param({ "4" })
+	int shards;
+	
+	ICounters single;
+	ICounters sharded;
+	
+	@Setup
+	public void setup() {
+		single = AbstractProxy.create(ICounters.class, new AbstractProxy(new Counters()));
+		List<Counters> copies = new ArrayList<Counters>();
+		for (int i = 0; i < shards; i++)
+			copies.add(new Counters());
+		sharded = ShardingProxy.builder(ICounters.class, copies).key("increment", 0).build();
+	}
+	
+	@Benchmark
+	public void singleLock() {
+		single.increment(ThreadLocalRandom.current().nextInt(1024));
+	}
+	
+	@Benchmark
+	public void sharded() {
+		sharded.increment(ThreadLocalRandom.current().nextInt(1024));
+	}
+
+}
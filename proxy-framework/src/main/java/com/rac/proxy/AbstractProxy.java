@@ -1,7 +1,8 @@
+package com.rac.proxy;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 
 class AbstractProxy implements InvocationHandler {
 	
@@ -17,9 +18,8 @@ class AbstractProxy implements InvocationHandler {
 		return method.invoke(target,args);
 	}
 
-	@SuppressWarnings("unchecked")
 	public static <T> T create(Class<T> interfaceClass, AbstractProxy proxy) {
-        return (T)Proxy.newProxyInstance(proxy.target.getClass().getClassLoader(),new Class<?>[] {interfaceClass},proxy);			
+        return ProxyFactory.forTarget(interfaceClass,proxy.target.getClass()).newInstance(proxy);			
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.rac.proxy;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ActorProxy gives a target that must only be used by one thread at a time a
+ * thread of its own. Calls from any thread are posted to the target's mailbox
+ * and run, in the order they were posted, on its owner thread:
+ *
+ * {@code
+ * interface ICounter      { void add(int n); int total(); }
+ * interface ICounterActor { void add(int n); CompletableFuture<Integer> total(); }
+ *
+ * ICounterActor counter = ActorProxy.create(ICounterActor.class, ICounter.class, new Counter());
+ * }
+ *
+ * Methods are matched between the two interfaces as in {@link AsyncProxy}.
+ * Void methods are fire-and-forget, so whatever they throw is only counted in
+ * the {@link Stats}; methods returning a future complete it with the result;
+ * and methods returning anything else wait for their turn and return the
+ * result directly. A call made from the owner thread itself (the target
+ * calling back through the proxy) runs at once, as it could never be reached
+ * in the mailbox otherwise.
+ *
+ * The mailbox is a fixed ring of preallocated messages, each with its own
+ * sequence number, so posting is a CAS on the tail and taking is lock-free
+ * for the single owner. When the ring is full, posters back off until the
+ * owner makes room. The owner (a virtual thread where available, see
+ * {@link VirtualThreads}) takes messages in batches and parks when the
+ * mailbox is empty.
+ *
+ * The owner thread only holds the handler weakly while it is parked, so it
+ * ends on its own, within one park, once the proxy is no longer reachable;
+ * {@link #close(Object)} ends it at once.
+ */
+class ActorProxy implements InvocationHandler {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	// messages run before the owner looks at its state again
+	private static final int BATCH = 64;
+
+	// longest the owner parks before checking whether the proxy is still reachable
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private final Object target;
+	private final Map<Method,Method> counterparts;
+	private final Stats stats = new Stats();
+
+	// the mailbox
+	private final Message[] messages;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private long head;	// owner only
+
+	private final Thread owner;
+	private volatile boolean idle;
+	private volatile boolean closed;
+
+	// posters between their closed check and publishing, so close loses nothing
+	private final AtomicLong posting = new AtomicLong();
+
+	public ActorProxy(Class<?> actorInterface, Class<?> targetInterface, Object target, int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("capacity must be a power of two, at least 2");
+		this.target = target;
+		this.counterparts = AsyncProxy.counterparts(actorInterface, targetInterface);
+		this.messages = new Message[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		this.mask = capacity - 1;
+		for (int i = 0; i < capacity; i++) {
+			messages[i] = new Message();
+			sequences.set(i, i);
+		}
+		WeakReference<ActorProxy> self = new WeakReference<ActorProxy>(this);
+		this.owner = VirtualThreads.start("actor-" + target.getClass().getSimpleName(), () -> run(self));
+	}
+
+	// Factories
+
+	public static <A,T> A create(Class<A> actorInterface, Class<T> targetInterface, T target) {
+		return create(actorInterface, targetInterface, target, DEFAULT_CAPACITY);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <A,T> A create(Class<A> actorInterface, Class<T> targetInterface, T target, int capacity) {
+		return (A)Proxy.newProxyInstance(
+			actorInterface.getClassLoader(),
+			new Class<?>[] { actorInterface },
+			new ActorProxy(actorInterface, targetInterface, target, capacity));
+	}
+
+	/**
+	 * Stops accepting calls. Calls already in the mailbox still run, after which
+	 * the owner thread ends.
+	 */
+	public static void close(Object proxy) {
+		ActorProxy handler = handlerOf(proxy);
+		handler.closed = true;
+		LockSupport.unpark(handler.owner);
+	}
+
+	/**
+	 * Closes the actor and waits for its owner thread to finish.
+	 *
+	 * @return false if the owner was still running when the timeout expired
+	 */
+	public static boolean awaitTermination(Object proxy, long timeout, TimeUnit unit) throws InterruptedException {
+		close(proxy);
+		Thread owner = handlerOf(proxy).owner;
+		owner.join(Math.max(1, unit.toMillis(timeout)));
+		return owner.isAlive() == false;
+	}
+
+	public static Stats stats(Object proxy) {
+		return handlerOf(proxy).stats;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		Method counterpart = counterparts.get(method);
+		if (counterpart == null || counterpart.getDeclaringClass() == Object.class)
+			return (counterpart == null ? method : counterpart).invoke(target, args);
+
+		Class<?> returnType = method.getReturnType();
+		if (Thread.currentThread() == owner)
+			return inline(counterpart, args, returnType);
+
+		if (returnType == void.class) {
+			post(counterpart, args, null);
+			return null;
+		}
+
+		CompletableFuture<Object> result = new CompletableFuture<Object>();
+		post(counterpart, args, result);
+		if (AsyncProxy.isFuture(returnType))
+			return result;
+		try {
+			return result.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Implementation support
+
+	private static ActorProxy handlerOf(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof ActorProxy == false)
+			throw new IllegalArgumentException("not an actor proxy: " + proxy);
+		return (ActorProxy)handler;
+	}
+
+	private Object inline(Method method, Object[] args, Class<?> returnType) throws Throwable {
+		CompletableFuture<Object> result = new CompletableFuture<Object>();
+		execute(method, args == null ? NO_ARGS : args, returnType == void.class ? null : result);
+		if (returnType == void.class)
+			return null;
+		if (AsyncProxy.isFuture(returnType))
+			return result;
+		try {
+			return result.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+
+	private void post(Method method, Object[] args, CompletableFuture<Object> result) {
+		posting.incrementAndGet();
+		try {
+			publish(method, args, result);
+		} finally {
+			posting.decrementAndGet();
+		}
+		if (idle)
+			LockSupport.unpark(owner);
+	}
+
+	private void publish(Method method, Object[] args, CompletableFuture<Object> result) {
+		int spins = 0;
+		for (;;) {
+			if (closed)
+				throw new RejectedExecutionException("actor is closed");
+
+			long position = tail.get();
+			int index = (int)position & mask;
+			long sequence = sequences.get(index);
+
+			if (sequence == position && tail.compareAndSet(position, position + 1)) {
+				Message message = messages[index];
+				message.method = method;
+				message.args = args == null ? NO_ARGS : args;
+				message.result = result;
+				sequences.set(index, position + 1);
+				stats.posted.incrementAndGet();
+				return;
+			}
+
+			if (sequence < position) {
+				// full: let the owner catch up
+				if (spins++ == 0)
+					stats.full.incrementAndGet();
+				if (spins < 100)
+					Thread.yield();
+				else
+					LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+			}
+		}
+	}
+
+	/**
+	 * The owner's loop. It parks without a strong reference to the handler, so
+	 * that a proxy nobody can call any more does not keep its thread alive.
+	 */
+	private static void run(WeakReference<ActorProxy> self) {
+		while (runUntilIdle(self))
+			LockSupport.parkNanos(self, PARK_NANOS);
+	}
+
+	/**
+	 * @return true to park, false once the actor is closed and drained or gone
+	 */
+	private static boolean runUntilIdle(WeakReference<ActorProxy> self) {
+		ActorProxy actor = self.get();
+		return actor != null && actor.runUntilIdle();
+	}
+
+	private boolean runUntilIdle() {
+		for (;;) {
+			idle = false;
+			int taken = drain();
+			if (taken > 0)
+				continue;
+
+			if (closed && posting.get() == 0 && isEmpty())
+				return false;
+
+			idle = true;
+			if (isEmpty() && closed == false)
+				return true;
+		}
+	}
+
+	private boolean isEmpty() {
+		return sequences.get((int)head & mask) != head + 1;
+	}
+
+	private int drain() {
+		int taken = 0;
+		while (taken < BATCH) {
+			int index = (int)head & mask;
+			if (sequences.get(index) != head + 1)
+				break;
+
+			Message message = messages[index];
+			Method method = message.method;
+			Object[] args = message.args;
+			CompletableFuture<Object> result = message.result;
+			message.method = null;
+			message.args = null;
+			message.result = null;
+			sequences.lazySet(index, head + messages.length);
+			head++;
+			taken++;
+
+			execute(method, args, result);
+		}
+		if (taken > 0) {
+			stats.batches.incrementAndGet();
+			stats.processed.addAndGet(taken);
+		}
+		return taken;
+	}
+
+	private void execute(Method method, Object[] args, CompletableFuture<Object> result) {
+		try {
+			Object value = method.invoke(target, args);
+			if (result != null)
+				result.complete(value);
+		} catch (InvocationTargetException e) {
+			fail(result, e.getCause());
+		} catch (Throwable t) {
+			fail(result, t);
+		}
+	}
+
+	private void fail(CompletableFuture<Object> result, Throwable failure) {
+		if (result != null)
+			result.completeExceptionally(failure);
+		else
+			stats.failures.incrementAndGet();
+	}
+
+	/**
+	 * Message is one slot of the mailbox, reused for every call that passes
+	 * through it.
+	 */
+	private static final class Message {
+		Method method;
+		Object[] args;
+		CompletableFuture<Object> result;
+	}
+
+	/**
+	 * Stats counts the calls posted and run, the batches they ran in, how often
+	 * posters found the mailbox full, and fire-and-forget calls that threw.
+	 */
+	public static class Stats {
+
+		private final AtomicLong posted = new AtomicLong();
+		private final AtomicLong processed = new AtomicLong();
+		private final AtomicLong batches = new AtomicLong();
+		private final AtomicLong full = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+
+		public long getPosted()       { return posted.get(); }
+		public long getProcessed()    { return processed.get(); }
+		public long getBatches()      { return batches.get(); }
+		public long getFull()         { return full.get(); }
+		public long getFailures()     { return failures.get(); }
+
+		public double getAverageBatchSize() {
+			long batches = getBatches();
+			return batches == 0 ? 0 : (double)getProcessed() / batches;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("posted=%d processed=%d batches=%d avgBatch=%.1f full=%d failures=%d",
+				getPosted(), getProcessed(), getBatches(), getAverageBatchSize(), getFull(), getFailures());
+		}
+	}
+
+}
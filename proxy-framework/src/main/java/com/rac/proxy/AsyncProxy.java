@@ -0,0 +1,308 @@
+package com.rac.proxy;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * AsyncProxy turns a blocking service into a non-blocking one, given an async
+ * counterpart of its interface in which every method returns a future:
+ *
+ * {@code
+ * interface IService      { String lookup(String key); }
+ * interface IServiceAsync { CompletableFuture<String> lookup(String key); }
+ *
+ * IServiceAsync async = AsyncProxy.create(IServiceAsync.class, IService.class, service);
+ * }
+ *
+ * Each call runs the matching blocking method on an executor, by default one
+ * virtual thread per call (see {@link VirtualThreads}). Exceptions thrown by
+ * the target complete the future exceptionally, and cancelling the future
+ * interrupts the call if it is running or skips it if it is not. An optional
+ * limit bounds how many calls run against the target at once; calls beyond
+ * the limit wait in a queue rather than blocking the caller. The limit belongs
+ * to the target: every bounded proxy over the same target object shares one
+ * permit count and queue, so all of them must ask for the same limit. Targets
+ * are held weakly for this, so a limit goes away with its target.
+ *
+ * Methods of the async interface that do not return a future are invoked on
+ * the target directly, on the caller's thread.
+ */
+class AsyncProxy implements InvocationHandler {
+
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	private static final ClassValue<ConcurrentMap<Class<?>,Map<Method,Method>>> COUNTERPARTS =
+		new ClassValue<ConcurrentMap<Class<?>,Map<Method,Method>>>() {
+			@Override
+			protected ConcurrentMap<Class<?>,Map<Method,Method>> computeValue(Class<?> type) {
+				return new ConcurrentHashMap<Class<?>,Map<Method,Method>>();
+			}
+		};
+
+	// the limiter of each bounded target, by identity
+	private static final Limiters LIMITERS = new Limiters();
+
+	private final Object target;
+	private final Map<Method,Method> counterparts;
+	private final Executor executor;
+	private final Limiter limiter;	// null when unbounded
+
+	public AsyncProxy(Class<?> asyncInterface, Class<?> syncInterface, Object target, Executor executor, int maxConcurrency) {
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("maxConcurrency must be at least 1");
+		this.target = target;
+		this.counterparts = counterparts(asyncInterface, syncInterface);
+		this.executor = executor;
+		this.limiter = maxConcurrency == UNBOUNDED ? null : LIMITERS.of(target, maxConcurrency);
+	}
+
+	// Factories
+
+	public static <A,S> A create(Class<A> asyncInterface, Class<S> syncInterface, S target) {
+		return create(asyncInterface, syncInterface, target, VirtualThreads.executor(), UNBOUNDED);
+	}
+
+	public static <A,S> A create(Class<A> asyncInterface, Class<S> syncInterface, S target, int maxConcurrency) {
+		return create(asyncInterface, syncInterface, target, VirtualThreads.executor(), maxConcurrency);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <A,S> A create(Class<A> asyncInterface, Class<S> syncInterface, S target, Executor executor, int maxConcurrency) {
+		return (A)Proxy.newProxyInstance(
+			asyncInterface.getClassLoader(),
+			new Class<?>[] { asyncInterface },
+			new AsyncProxy(asyncInterface, syncInterface, target, executor, maxConcurrency));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		Method counterpart = counterparts.get(method);
+		if (counterpart == null || isFuture(method.getReturnType()) == false) {
+			try {
+				return (counterpart == null ? method : counterpart).invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		Call call = new Call(counterpart, args);
+		if (limiter == null)
+			call.dispatch();
+		else
+			limiter.submit(call);
+		return call.result;
+	}
+
+	// Concurrency limiting
+
+	/**
+	 * Limiter is the permit count and queue of one target, shared by every
+	 * bounded proxy over it.
+	 */
+	private static final class Limiter {
+
+		final int maxConcurrency;
+		private final AtomicInteger running = new AtomicInteger();
+		private final Queue<Call> waiting = new ConcurrentLinkedQueue<Call>();
+
+		Limiter(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		void submit(Call call) {
+			if (tryAcquire()) {
+				call.dispatch();
+				return;
+			}
+			waiting.add(call);
+
+			// a permit may have been released between the failed acquire and the add
+			drain();
+		}
+
+		void release() {
+			running.decrementAndGet();
+			drain();
+		}
+
+		private void drain() {
+			while (waiting.isEmpty() == false && tryAcquire()) {
+				Call next = waiting.poll();
+				if (next == null) {
+					running.decrementAndGet();
+					return;
+				}
+				next.dispatch();
+			}
+		}
+
+		private boolean tryAcquire() {
+			for (;;) {
+				int current = running.get();
+				if (current >= maxConcurrency)
+					return false;
+				if (running.compareAndSet(current, current + 1))
+					return true;
+			}
+		}
+	}
+
+	/**
+	 * Limiters maps targets, by identity, to their limiters. The targets are
+	 * held weakly, and the entries of collected targets are dropped on the next
+	 * lookup.
+	 */
+	private static final class Limiters {
+
+		private final Map<Key,Limiter> limiters = new HashMap<Key,Limiter>();
+		private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+		synchronized Limiter of(Object target, int maxConcurrency) {
+			for (Reference<?> key; (key = collected.poll()) != null; )
+				limiters.remove(key);
+
+			Limiter limiter = limiters.get(new Key(target, null));
+			if (limiter == null)
+				limiters.put(new Key(target, collected), limiter = new Limiter(maxConcurrency));
+			else if (limiter.maxConcurrency != maxConcurrency)
+				throw new IllegalArgumentException("target is already limited to " + limiter.maxConcurrency + " calls at once");
+			return limiter;
+		}
+	}
+
+	/**
+	 * Key is a weak reference that compares by the identity of its target.
+	 */
+	private static final class Key extends WeakReference<Object> {
+
+		private final int hash;
+
+		Key(Object target, ReferenceQueue<Object> queue) {
+			super(target, queue);
+			this.hash = System.identityHashCode(target);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other == this)
+				return true;
+			Object target = get();
+			return target != null && other instanceof Key && ((Key)other).get() == target;
+		}
+	}
+
+	// Implementation support
+
+	/**
+	 * @return a mapping from each method of the async interface to the method of the
+	 * sync interface with the same name and parameters, computed once per pair
+	 */
+	static Map<Method,Method> counterparts(Class<?> asyncInterface, Class<?> syncInterface) {
+		ConcurrentMap<Class<?>,Map<Method,Method>> bySync = COUNTERPARTS.get(asyncInterface);
+		Map<Method,Method> counterparts = bySync.get(syncInterface);
+		if (counterparts == null) {
+			Map<Method,Method> computed = new HashMap<Method,Method>();
+			for (Method method : asyncInterface.getMethods()) {
+				try {
+					computed.put(method, syncInterface.getMethod(method.getName(), method.getParameterTypes()));
+				} catch (NoSuchMethodException e) {
+					throw new IllegalArgumentException(syncInterface.getName() + " has no counterpart for " + method);
+				}
+			}
+			for (Method method : Object.class.getMethods())
+				computed.put(method, method);
+			counterparts = Collections.unmodifiableMap(computed);
+			bySync.putIfAbsent(syncInterface, counterparts);
+		}
+		return counterparts;
+	}
+
+	static boolean isFuture(Class<?> type) {
+		return type == CompletableFuture.class || type == CompletionStage.class || type == Future.class;
+	}
+
+	/**
+	 * Call is one queued invocation of the target. It keeps track of the thread
+	 * running it so that cancelling the future can interrupt that thread, and only
+	 * that thread, while the call is still in progress.
+	 */
+	private final class Call implements Runnable, BiConsumer<Object,Throwable> {
+
+		final Method method;
+		final Object[] args;
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+		private Thread runner;
+
+		Call(Method method, Object[] args) {
+			this.method = method;
+			this.args = args;
+			result.whenComplete(this);
+		}
+
+		void dispatch() {
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				result.completeExceptionally(e);
+				if (limiter != null)
+					limiter.release();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (result.isDone())
+					return;
+
+				synchronized (this) { runner = Thread.currentThread(); }
+				try {
+					result.complete(method.invoke(target, args));
+				} catch (InvocationTargetException e) {
+					result.completeExceptionally(e.getCause());
+				} catch (Throwable t) {
+					result.completeExceptionally(t);
+				} finally {
+					synchronized (this) { runner = null; }
+					// swallow an interrupt that raced with completion
+					Thread.interrupted();
+				}
+			} finally {
+				if (limiter != null)
+					limiter.release();
+			}
+		}
+
+		@Override
+		public synchronized void accept(Object value, Throwable failure) {
+			if (runner != null && result.isCancelled())
+				runner.interrupt();
+		}
+	}
+
+}
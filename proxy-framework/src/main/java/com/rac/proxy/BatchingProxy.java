@@ -0,0 +1,244 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * BatchingProxy coalesces single-key lookups made from many threads into one
+ * call of a bulk function. Given an interface with a method such as
+ * {@code getUser(id)} and a backend that can answer {@code getUsers(ids)}:
+ *
+ * {@code
+ * IUsers users = BatchingProxy.create(IUsers.class, backend, "getUser",
+ *     ids -> backend.getUsers(ids), 100, 500);
+ * }
+ *
+ * Each call of the batched method joins the pending batch and waits. The batch
+ * is sent when it holds {@code maxBatchSize} distinct keys, or when the first
+ * key in it has waited {@code maxWaitMicros}, whichever comes first; its
+ * results are then handed back to every waiting caller. Callers asking for the
+ * same key in the same batch share one slot, and keys missing from the result
+ * map yield null. The batched method is resolved once, when the proxy is
+ * created: by name it must be the interface's only one-argument method of that
+ * name, and an overload can be passed as a {@code Method} instead. All other
+ * methods, overloads included, are invoked on the target directly.
+ *
+ * {@link #stats(Object)} reports how well calls are being coalesced.
+ */
+class BatchingProxy<K,V> implements InvocationHandler {
+
+	private static final ScheduledThreadPoolExecutor timer = newTimer();
+
+	private final Object target;
+	private final Method batched;
+	private final Function<? super Set<K>,? extends Map<K,V>> batchFunction;
+	private final int maxBatchSize;
+	private final long maxWaitMicros;
+	private final Stats stats = new Stats();
+
+	// the batch currently accepting keys, guarded by this
+	private Batch pending;
+
+	public BatchingProxy(Object target, Method batched, Function<? super Set<K>,? extends Map<K,V>> batchFunction,
+			int maxBatchSize, long maxWaitMicros) {
+		if (maxBatchSize < 1)
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+		this.target = target;
+		this.batched = batched;
+		this.batchFunction = batchFunction;
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitMicros = maxWaitMicros;
+	}
+
+	public static <T,K,V> T create(Class<T> interfaceClass, T target, String methodName,
+			Function<? super Set<K>,? extends Map<K,V>> batchFunction, int maxBatchSize, long maxWaitMicros) {
+		return create(interfaceClass, target, batchedMethod(interfaceClass, methodName), batchFunction, maxBatchSize, maxWaitMicros);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T,K,V> T create(Class<T> interfaceClass, T target, Method batched,
+			Function<? super Set<K>,? extends Map<K,V>> batchFunction, int maxBatchSize, long maxWaitMicros) {
+		if (batched.getParameterCount() != 1 || batched.getDeclaringClass().isAssignableFrom(interfaceClass) == false)
+			throw new IllegalArgumentException(batched + " is not a one-argument method of " + interfaceClass.getName());
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new BatchingProxy<K,V>(target, batched, batchFunction, maxBatchSize, maxWaitMicros));
+	}
+
+	/**
+	 * @return the interface's only one-argument method with the given name
+	 */
+	static Method batchedMethod(Class<?> interfaceClass, String methodName) {
+		Method found = null;
+		for (Method method : interfaceClass.getMethods()) {
+			if (method.getName().equals(methodName) == false || method.getParameterCount() != 1)
+				continue;
+			if (found != null)
+				throw new IllegalArgumentException("more than one " + methodName + "(x) in " + interfaceClass.getName());
+			found = method;
+		}
+		if (found == null)
+			throw new IllegalArgumentException("no " + methodName + "(x) in " + interfaceClass.getName());
+		return found;
+	}
+
+	public static Stats stats(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof BatchingProxy == false)
+			throw new IllegalArgumentException("not a batching proxy: " + proxy);
+		return ((BatchingProxy<?,?>)handler).stats;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		if (method.equals(batched) == false)
+			return method.invoke(target, args);
+
+		try {
+			return enqueue((K)args[0]).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw e;
+		}
+	}
+
+	private CompletableFuture<V> enqueue(K key) {
+		Batch full = null;
+		CompletableFuture<V> result;
+
+		synchronized (this) {
+			if (pending == null) {
+				final Batch batch = pending = new Batch();
+				batch.timeout = timer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (close(batch))
+							VirtualThreads.executor().execute(batch);
+					}
+				}, maxWaitMicros, TimeUnit.MICROSECONDS);
+			}
+
+			stats.calls.incrementAndGet();
+			result = pending.calls.get(key);
+			if (result == null) {
+				pending.calls.put(key, result = new CompletableFuture<V>());
+				if (pending.calls.size() >= maxBatchSize) {
+					full = pending;
+					pending = null;
+				}
+			} else {
+				stats.deduplicated.incrementAndGet();
+			}
+		}
+
+		// a full batch is sent by the caller that filled it, and its timeout dropped
+		if (full != null) {
+			full.timeout.cancel(false);
+			full.run();
+		}
+		return result;
+	}
+
+	private static ScheduledThreadPoolExecutor newTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, VirtualThreads.daemonThreads());
+		// so a cancelled timeout does not hold on to its batch until it is due
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	private synchronized boolean close(Batch batch) {
+		if (pending != batch)
+			return false;
+		pending = null;
+		return true;
+	}
+
+	/**
+	 * Batch is one set of distinct keys and the callers waiting on them.
+	 */
+	private final class Batch implements Runnable {
+
+		final Map<K,CompletableFuture<V>> calls = new LinkedHashMap<K,CompletableFuture<V>>();
+		final long opened = System.nanoTime();
+
+		// flushes the batch when it has waited long enough, guarded by the proxy
+		ScheduledFuture<?> timeout;
+
+		@Override
+		public void run() {
+			stats.record(calls.size(), System.nanoTime() - opened);
+			try {
+				Set<K> keys = Collections.unmodifiableSet(new LinkedHashSet<K>(calls.keySet()));
+				Map<K,V> results = batchFunction.apply(keys);
+				for (Map.Entry<K,CompletableFuture<V>> call : calls.entrySet())
+					call.getValue().complete(results == null ? null : results.get(call.getKey()));
+			} catch (Throwable t) {
+				for (CompletableFuture<V> call : calls.values())
+					call.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * Stats counts calls and batches, so callers can see how many round-trips the
+	 * proxy is saving and how long calls wait for a batch to be sent.
+	 */
+	public static class Stats {
+
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong deduplicated = new AtomicLong();
+		private final AtomicLong batches = new AtomicLong();
+		private final AtomicLong keys = new AtomicLong();
+		private final AtomicLong waitNanos = new AtomicLong();
+		private final AtomicLong largestBatch = new AtomicLong();
+
+		void record(int size, long waited) {
+			batches.incrementAndGet();
+			keys.addAndGet(size);
+			waitNanos.addAndGet(waited);
+			largestBatch.accumulateAndGet(size, Math::max);
+		}
+
+		public long getCalls()         { return calls.get(); }
+		public long getDeduplicated()  { return deduplicated.get(); }
+		public long getBatches()       { return batches.get(); }
+		public long getKeys()          { return keys.get(); }
+		public long getLargestBatch()  { return largestBatch.get(); }
+
+		public double getAverageBatchSize() {
+			long count = batches.get();
+			return count == 0 ? 0 : (double)keys.get() / count;
+		}
+
+		public double getAverageWaitMicros() {
+			long count = batches.get();
+			return count == 0 ? 0 : waitNanos.get() / 1000.0 / count;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("calls=%d deduplicated=%d batches=%d avgBatch=%.1f avgWait=%.1fus",
+				getCalls(), getDeduplicated(), getBatches(), getAverageBatchSize(), getAverageWaitMicros());
+		}
+	}
+
+}
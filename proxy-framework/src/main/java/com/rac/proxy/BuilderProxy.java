@@ -0,0 +1,215 @@
+package com.rac.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * BuilderProxy provides a fluent way to populate an existing object through a
+ * builder interface whose setters return the builder itself:
+ *
+ * {@code
+ * interface ITargetBuilder extends BuilderProxy.Builder {
+ *     ITargetBuilder setName(String name);
+ *     ITargetBuilder setTitle(String title);
+ * }
+ *
+ * ITarget target = BuilderProxy.with(ITargetBuilder.class, new Target())
+ *     .setName("Jack")
+ *     .setTitle("Architect")
+ *     .as(ITarget.class);
+ * }
+ *
+ * Setter calls are only recorded, into an array indexed by the builder's
+ * {@link PropertySlots}, and are applied to the target when {@code as()} is
+ * called, using the setters of the requested interface. Any other method of
+ * the builder interface throws an {@code UnsupportedOperationException}.
+ *
+ * For large batches, {@link #batch(Class, Supplier)} builds any number of
+ * objects from one array per property, applying each column through the same
+ * slot plan without creating a proxy (or anything else) per object.
+ */
+class BuilderProxy implements InvocationHandler {
+
+	/**
+	 * Builder is the base for builder interfaces, providing the terminal call.
+	 */
+	public interface Builder {
+		public <T> T as(Class<T> interfaceClass);
+	}
+
+	private static final Method AS;
+	static {
+		try {
+			AS = Builder.class.getMethod("as", Class.class);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Object target;
+	private final PropertySlots slots;
+	private final Object[] values;
+	private final boolean[] recorded;
+
+	public BuilderProxy(Class<? extends Builder> builderClass, Object target) {
+		this.target = target;
+		this.slots = PropertySlots.of(builderClass);
+		this.values = new Object[slots.size()];
+		this.recorded = new boolean[slots.size()];
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <B extends Builder> B with(Class<B> builderClass, Object target) {
+		return (B)Proxy.newProxyInstance(
+			builderClass.getClassLoader(),
+			new Class<?>[] { builderClass },
+			new BuilderProxy(builderClass, target));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		int slot = slots.setterSlot(method);
+		if (slot >= 0) {
+			values[slot] = args[0];
+			recorded[slot] = true;
+			return proxy;
+		}
+
+		slot = slots.getterSlot(method);
+		if (slot >= 0)
+			return values[slot];
+
+		if (method.equals(AS))
+			return as((Class<?>)args[0]);
+
+		// equals(), hashCode() and toString() describe the builder itself
+		if (method.getDeclaringClass() == Object.class) {
+			switch (method.getName()) {
+			case "equals":   return proxy == args[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			case "toString": return toString();
+			}
+		}
+		throw new UnsupportedOperationException(method.toString());
+	}
+
+	private Object as(Class<?> interfaceClass) throws Throwable {
+		PropertySlots into = PropertySlots.of(interfaceClass);
+		for (int slot = 0; slot < values.length; slot++) {
+			if (recorded[slot] == false)
+				continue;
+
+			int targetSlot = into.slotOf(slots.name(slot));
+			MethodHandle setter = targetSlot < 0 ? null : into.setterHandle(targetSlot);
+			if (setter == null)
+				throw new IllegalArgumentException(interfaceClass.getName() + " has no setter for " + slots.name(slot));
+			setter.invokeExact(target, values[slot]);
+		}
+
+		return interfaceClass.isInstance(target)
+			? target
+			: AbstractProxy.create(interfaceClass, new AbstractProxy(target));
+	}
+
+	@Override
+	public String toString() {
+		return "BuilderProxy[" + target + "]";
+	}
+
+	// Bulk construction
+
+	public static <T> Batch<T> batch(Class<T> interfaceClass, Supplier<? extends T> factory) {
+		return new Batch<T>(interfaceClass, factory);
+	}
+
+	/**
+	 * Batch builds objects column by column: each property is given as one array
+	 * (primitive arrays included), and object {@code i} receives element {@code i}
+	 * of every column. Each column is bound once to a handle that reads the array
+	 * and calls the setter, so building an object costs only the factory call and
+	 * one handle invocation per column.
+	 */
+	public static class Batch<T> {
+
+		private static final MethodType APPLY = MethodType.methodType(void.class, Object.class, Object.class, int.class);
+
+		private final Class<T> interfaceClass;
+		private final Supplier<? extends T> factory;
+		private final PropertySlots slots;
+		private MethodHandle[] appliers = new MethodHandle[0];
+		private Object[] columns = new Object[0];
+		private int length = -1;
+
+		Batch(Class<T> interfaceClass, Supplier<? extends T> factory) {
+			this.interfaceClass = interfaceClass;
+			this.factory = factory;
+			this.slots = PropertySlots.of(interfaceClass);
+		}
+
+		public Batch<T> column(String property, Object array) {
+			int slot = slots.slotOf(property);
+			if (slot < 0 || slots.setter(slot) == null)
+				throw new IllegalArgumentException(interfaceClass.getName() + " has no setter for " + property);
+			if (array == null || array.getClass().isArray() == false)
+				throw new IllegalArgumentException("column " + property + " is not an array");
+
+			int columnLength = Array.getLength(array);
+			if (length >= 0 && columnLength != length)
+				throw new IllegalArgumentException("column " + property + " has " + columnLength + " values, expected " + length);
+			length = columnLength;
+
+			int n = columns.length;
+			appliers = Arrays.copyOf(appliers, n + 1);
+			columns = Arrays.copyOf(columns, n + 1);
+			appliers[n] = applier(slot, array.getClass());
+			columns[n] = array;
+			return this;
+		}
+
+		/**
+		 * @return one new object per row, in column order
+		 */
+		public List<T> build() {
+			int rows = Math.max(length, 0);
+			List<T> built = new ArrayList<T>(rows);
+			try {
+				for (int row = 0; row < rows; row++) {
+					T object = factory.get();
+					for (int c = 0; c < appliers.length; c++)
+						appliers[c].invokeExact((Object)object, columns[c], row);
+					built.add(object);
+				}
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+			return built;
+		}
+
+		/**
+		 * @return a handle of type {@code (Object,Object,int)void} that reads one
+		 * element of the column array and passes it to the slot's setter
+		 */
+		private MethodHandle applier(int slot, Class<?> arrayClass) {
+			Class<?> element = arrayClass.getComponentType();
+			MethodHandle setter = PropertySlots.unreflect(slots.setter(slot))
+				.asType(MethodType.methodType(void.class, Object.class, element));
+			return MethodHandles.collectArguments(setter, 1, MethodHandles.arrayElementGetter(arrayClass))
+				.asType(APPLY);
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+/**
+ * ChangeTrackingProxy remembers which properties of a bean have been written
+ * since they were last drained, so persistence and replication can ship only
+ * what changed:
+ *
+ * {@code
+ * IPerson person = ChangeTrackingProxy.create(IPerson.class, new Person());
+ * person.setName("Ann");
+ * Delta delta = new Delta(IPerson.class);
+ * ChangeTrackingProxy.drainChanges(person, delta);   // one change: name = "Ann"
+ * ...
+ * ChangeTrackingProxy.apply(replica, delta);
+ * }
+ *
+ * Each proxy keeps one bit per property slot, plus the last value written to
+ * it, so repeated writes to the same property coalesce into one change. The
+ * {@link Delta} is a plain pair of arrays that the caller can reuse from one
+ * drain to the next, so steady-state tracking allocates nothing.
+ *
+ * Writes go straight through to the target; the proxy only keeps the record.
+ * A write and its record are made under one lock per property, so when two
+ * threads set the same property the value recorded is the one the target
+ * ends up holding.
+ */
+class ChangeTrackingProxy implements InvocationHandler {
+
+	private final Object target;
+	private final PropertySlots slots;
+	private final Object[] writeLocks;
+
+	// guarded by this
+	private final long[] dirty;
+	private final Object[] values;
+
+	public ChangeTrackingProxy(Class<?> interfaceClass, Object target) {
+		this.target = target;
+		this.slots = PropertySlots.of(interfaceClass);
+		this.dirty = new long[(slots.size() + 63) >>> 6];
+		this.values = new Object[slots.size()];
+		this.writeLocks = new Object[slots.size()];
+		for (int slot = 0; slot < writeLocks.length; slot++)
+			writeLocks[slot] = new Object();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		int slot = slots.setterSlot(method);
+		try {
+			if (slot < 0)
+				return method.invoke(target, args);
+
+			synchronized (writeLocks[slot]) {
+				Object result = method.invoke(target, args);
+				mark(slot, args[0]);
+				return result;
+			}
+		} catch (InvocationTargetException e) {
+			// a setter that threw is not recorded
+			throw e.getCause();
+		}
+	}
+
+	// Factories
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new ChangeTrackingProxy(interfaceClass, target));
+	}
+
+	/**
+	 * Moves every change recorded by the proxy into the delta, replacing whatever
+	 * the delta held, and clears the proxy's record.
+	 *
+	 * @return the number of changes drained
+	 */
+	public static int drainChanges(Object proxy, Delta delta) {
+		ChangeTrackingProxy handler = handlerOf(proxy);
+		if (delta.slots != handler.slots)
+			throw new IllegalArgumentException("delta is for " + delta.slots.interfaceClass().getName());
+		return handler.drain(delta);
+	}
+
+	public static boolean isDirty(Object proxy) {
+		ChangeTrackingProxy handler = handlerOf(proxy);
+		synchronized (handler) {
+			for (long word : handler.dirty) {
+				if (word != 0)
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Writes every change in the delta onto the target, using the interface's
+	 * setters, in slot order.
+	 */
+	public static void apply(Object target, Delta delta) {
+		for (int i = 0; i < delta.size; i++) {
+			try {
+				delta.slots.setterHandle(delta.changed[i]).invokeExact(target, delta.values[i]);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		}
+	}
+
+	// Implementation support
+
+	private static ChangeTrackingProxy handlerOf(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof ChangeTrackingProxy == false)
+			throw new IllegalArgumentException("not a change-tracking proxy: " + proxy);
+		return (ChangeTrackingProxy)handler;
+	}
+
+	private synchronized void mark(int slot, Object value) {
+		dirty[slot >>> 6] |= 1L << slot;
+		values[slot] = value;
+	}
+
+	private synchronized int drain(Delta delta) {
+		delta.size = 0;
+		for (int word = 0; word < dirty.length; word++) {
+			long bits = dirty[word];
+			while (bits != 0) {
+				int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+				delta.changed[delta.size] = slot;
+				delta.values[delta.size] = values[slot];
+				delta.size++;
+				values[slot] = null;
+				bits &= bits - 1;
+			}
+			dirty[word] = 0;
+		}
+		return delta.size;
+	}
+
+	/**
+	 * Delta is a reusable buffer of (slot, value) changes for one interface. It
+	 * is sized for every property at once, so draining into it never grows it.
+	 */
+	public static class Delta {
+
+		private final PropertySlots slots;
+		private final int[] changed;
+		private final Object[] values;
+		private int size;
+
+		public Delta(Class<?> interfaceClass) {
+			this.slots = PropertySlots.of(interfaceClass);
+			this.changed = new int[slots.size()];
+			this.values = new Object[slots.size()];
+		}
+
+		public int size()                { return size; }
+		public int slot(int index)       { return changed[checkIndex(index)]; }
+		public String name(int index)    { return slots.name(slot(index)); }
+		public Object value(int index)   { return values[checkIndex(index)]; }
+
+		/**
+		 * Adds a change by hand, e.g. when decoding a delta received from elsewhere.
+		 */
+		public Delta put(int slot, Object value) {
+			if (slot < 0 || slot >= slots.size() || slots.setter(slot) == null)
+				throw new IllegalArgumentException("no writable property in slot " + slot);
+			for (int i = 0; i < size; i++) {
+				if (changed[i] == slot) {
+					values[i] = value;
+					return this;
+				}
+			}
+			changed[size] = slot;
+			values[size] = value;
+			size++;
+			return this;
+		}
+
+		public void clear() {
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+		}
+
+		private int checkIndex(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder("Delta[");
+			for (int i = 0; i < size; i++)
+				text.append(i == 0 ? "" : ", ").append(slots.name(changed[i])).append("=").append(values[i]);
+			return text.append("]").toString();
+		}
+	}
+
+}
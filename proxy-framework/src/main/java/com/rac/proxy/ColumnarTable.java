@@ -0,0 +1,590 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoublePredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * ColumnarTable holds records described by a bean interface as one primitive
+ * array per property, rather than as one object per record:
+ *
+ * {@code
+ * ColumnarTable<ITrade> trades = ColumnarTable.create(ITrade.class);
+ * trades.add(trade);
+ * int[] big = trades.filterLong("quantity", q -> q > 1000);
+ * double total = trades.doubleStats("price", big).getSum();
+ * int[] byPrice = trades.sortedRows("price", big);
+ * }
+ *
+ * Integral properties (int, short, byte, char and boolean) share an
+ * {@code int[]} column, long properties a {@code long[]}, floating point ones a
+ * {@code double[]}, and Strings are dictionary encoded into an {@code int[]} of
+ * codes. Any other property type falls back to an {@code Object[]}.
+ *
+ * Filters, aggregates and sorts work on one column at a time and run on the
+ * fork-join common pool, so a scan touches only the array it needs, in order.
+ * Results are arrays of row numbers that later operations can take as their
+ * selection. Individual records are read and written through interface views:
+ * {@link #get(int)} for a view of one row, or a {@link Cursor} to move one view
+ * across many rows.
+ *
+ * The table is not safe for concurrent writes; scans may run alongside each
+ * other but not alongside writes.
+ */
+class ColumnarTable<T> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// below this many rows a sort is not worth splitting further
+	private static final int SEQUENTIAL_SORT = 4096;
+
+	private final Class<T> interfaceClass;
+	private final PropertySlots slots;
+	private final Column[] columns;
+	private int size;
+	private int capacity;
+
+	private ColumnarTable(Class<T> interfaceClass, int capacity) {
+		this.interfaceClass = interfaceClass;
+		this.slots = PropertySlots.of(interfaceClass);
+		this.columns = new Column[slots.size()];
+		this.capacity = Math.max(1, capacity);
+		for (int slot = 0; slot < columns.length; slot++)
+			columns[slot] = Column.of(slots.type(slot), this.capacity);
+	}
+
+	// Factories
+
+	public static <T> ColumnarTable<T> create(Class<T> interfaceClass) {
+		return create(interfaceClass, DEFAULT_CAPACITY);
+	}
+
+	public static <T> ColumnarTable<T> create(Class<T> interfaceClass, int initialCapacity) {
+		return new ColumnarTable<T>(interfaceClass, initialCapacity);
+	}
+
+	// Rows
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Appends a row with every property zero, false or null.
+	 *
+	 * @return the new row's number
+	 */
+	public int add() {
+		if (size == capacity) {
+			capacity = capacity * 2;
+			for (Column column : columns)
+				column.grow(capacity);
+		}
+		return size++;
+	}
+
+	/**
+	 * Appends a row holding a copy of every readable property of the record.
+	 *
+	 * @return the new row's number
+	 */
+	public int add(T record) {
+		int row = add();
+		for (int slot = 0; slot < columns.length; slot++) {
+			if (slots.getter(slot) == null)
+				continue;
+			try {
+				columns[slot].set(row, slots.getterHandle(slot).invokeExact((Object)record));
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * @return a view of one row
+	 */
+	public T get(int row) {
+		return cursor().moveTo(row).get();
+	}
+
+	/**
+	 * @return a new cursor, positioned before the first row
+	 */
+	public Cursor<T> cursor() {
+		return new Cursor<T>(this);
+	}
+
+	// Filters
+
+	/**
+	 * @return the rows, in order, whose integral property matches
+	 */
+	public int[] filterLong(String property, LongPredicate predicate) {
+		final IntToLongFunction longs = column(property).longs();
+		return IntStream.range(0, size).parallel().filter(row -> predicate.test(longs.applyAsLong(row))).toArray();
+	}
+
+	/**
+	 * @return the rows, in order, whose numeric property matches
+	 */
+	public int[] filterDouble(String property, DoublePredicate predicate) {
+		final IntToDoubleFunction doubles = column(property).doubles();
+		return IntStream.range(0, size).parallel().filter(row -> predicate.test(doubles.applyAsDouble(row))).toArray();
+	}
+
+	/**
+	 * Tests the predicate once per distinct value rather than once per row.
+	 *
+	 * @return the rows, in order, whose String property matches
+	 */
+	public int[] filterString(String property, Predicate<String> predicate) {
+		StringColumn column = strings(property);
+		final int[] codes = column.codes;
+		final boolean[] matches = new boolean[column.dictionary.size()];
+		for (int code = 0; code < matches.length; code++)
+			matches[code] = predicate.test(column.dictionary.get(code));
+		final boolean nullMatches = predicate.test(null);
+		return IntStream.range(0, size).parallel()
+			.filter(row -> codes[row] < 0 ? nullMatches : matches[codes[row]])
+			.toArray();
+	}
+
+	// Aggregates
+
+	public LongSummaryStatistics longStats(String property) {
+		return longStats(property, null);
+	}
+
+	/**
+	 * @param rows the selection to aggregate, or null for every row
+	 */
+	public LongSummaryStatistics longStats(String property, int[] rows) {
+		return rowsOf(rows).mapToLong(column(property).longs()).summaryStatistics();
+	}
+
+	public DoubleSummaryStatistics doubleStats(String property) {
+		return doubleStats(property, null);
+	}
+
+	/**
+	 * @param rows the selection to aggregate, or null for every row
+	 */
+	public DoubleSummaryStatistics doubleStats(String property, int[] rows) {
+		return rowsOf(rows).mapToDouble(column(property).doubles()).summaryStatistics();
+	}
+
+	// Sorting
+
+	public int[] sortedRows(String property) {
+		return sortedRows(property, null);
+	}
+
+	/**
+	 * Sorts with a parallel merge sort, so rows with equal values keep their order.
+	 * Strings sort in natural order, with nulls first.
+	 *
+	 * @param rows the selection to sort, or null for every row
+	 * @return the rows, ordered by ascending value of the property
+	 */
+	public int[] sortedRows(String property, int[] rows) {
+		Column column = column(property);
+		int[] sorted = rows == null ? IntStream.range(0, size).toArray() : rows.clone();
+		ForkJoinPool.commonPool().invoke(new MergeSort(column.comparator(), sorted, new int[sorted.length], 0, sorted.length));
+		return sorted;
+	}
+
+	// Implementation support
+
+	private IntStream rowsOf(int[] rows) {
+		return (rows == null ? IntStream.range(0, size) : Arrays.stream(rows)).parallel();
+	}
+
+	private Column column(String property) {
+		int slot = slots.slotOf(property);
+		if (slot < 0)
+			throw new IllegalArgumentException(interfaceClass.getName() + " has no property " + property);
+		return columns[slot];
+	}
+
+	private StringColumn strings(String property) {
+		Column column = column(property);
+		if (column instanceof StringColumn == false)
+			throw new IllegalArgumentException(property + " is not a String property");
+		return (StringColumn)column;
+	}
+
+	/**
+	 * RowComparator compares two rows by one column's values.
+	 */
+	interface RowComparator {
+		int compare(int a, int b);
+	}
+
+	/**
+	 * MergeSort sorts an array of row numbers, splitting across the pool while the
+	 * range is large.
+	 */
+	@SuppressWarnings("serial")
+	static final class MergeSort extends RecursiveAction {
+
+		private final RowComparator comparator;
+		private final int[] rows;
+		private final int[] scratch;
+		private final int from;
+		private final int to;
+
+		MergeSort(RowComparator comparator, int[] rows, int[] scratch, int from, int to) {
+			this.comparator = comparator;
+			this.rows = rows;
+			this.scratch = scratch;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_SORT) {
+				sort(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new MergeSort(comparator, rows, scratch, from, middle),
+				new MergeSort(comparator, rows, scratch, middle, to));
+			merge(from, middle, to);
+		}
+
+		private void sort(int from, int to) {
+			if (to - from < 2)
+				return;
+			int middle = (from + to) >>> 1;
+			sort(from, middle);
+			sort(middle, to);
+			merge(from, middle, to);
+		}
+
+		private void merge(int from, int middle, int to) {
+			if (comparator.compare(rows[middle - 1], rows[middle]) <= 0)
+				return;
+			System.arraycopy(rows, from, scratch, from, to - from);
+			int left = from, right = middle, out = from;
+			while (left < middle && right < to)
+				rows[out++] = comparator.compare(scratch[right], scratch[left]) < 0 ? scratch[right++] : scratch[left++];
+			while (left < middle)
+				rows[out++] = scratch[left++];
+			while (right < to)
+				rows[out++] = scratch[right++];
+		}
+	}
+
+	/**
+	 * Cursor is a single view that can be moved from row to row.
+	 */
+	public static class Cursor<T> implements InvocationHandler {
+
+		private final ColumnarTable<T> table;
+		private final T proxy;
+		private int row = -1;
+
+		private Cursor(ColumnarTable<T> table) {
+			this.table = table;
+			this.proxy = table.interfaceClass.cast(Proxy.newProxyInstance(
+				table.interfaceClass.getClassLoader(),
+				new Class<?>[] { table.interfaceClass },
+				this));
+		}
+
+		/**
+		 * @return the view of the interface, which always shows the row the cursor
+		 * is currently on
+		 */
+		public T get() {
+			return proxy;
+		}
+
+		public int row() {
+			return row;
+		}
+
+		public Cursor<T> moveTo(int row) {
+			if (row < 0 || row >= table.size)
+				throw new IndexOutOfBoundsException("row " + row + ", size " + table.size);
+			this.row = row;
+			return this;
+		}
+
+		/**
+		 * Moves to the next row.
+		 *
+		 * @return false, leaving the cursor where it was, if there is none
+		 */
+		public boolean next() {
+			if (row + 1 >= table.size)
+				return false;
+			row++;
+			return true;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			PropertySlots slots = table.slots;
+
+			int slot = slots.getterSlot(method);
+			if (slot >= 0)
+				return table.columns[slot].get(checkedRow());
+
+			slot = slots.setterSlot(method);
+			if (slot >= 0) {
+				table.columns[slot].set(checkedRow(), args[0]);
+				return null;
+			}
+
+			switch (method.getName()) {
+			case "equals":   return proxy == args[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			case "toString": return table.interfaceClass.getSimpleName() + "#" + row;
+			}
+			throw new UnsupportedOperationException(method.toString());
+		}
+
+		private int checkedRow() {
+			if (row < 0)
+				throw new IllegalStateException("cursor is not on a row");
+			return row;
+		}
+	}
+
+	// Columns
+
+	/**
+	 * Column is the storage for one property.
+	 */
+	abstract static class Column {
+
+		static Column of(Class<?> type, int capacity) {
+			if (type == long.class)
+				return new LongColumn(capacity);
+			if (type == double.class || type == float.class)
+				return new DoubleColumn(type, capacity);
+			if (type == String.class)
+				return new StringColumn(capacity);
+			if (type.isPrimitive())
+				return new IntColumn(type, capacity);
+			return new ObjectColumn(capacity);
+		}
+
+		abstract void grow(int capacity);
+		abstract Object get(int row);
+		abstract void set(int row, Object value);
+		abstract RowComparator comparator();
+
+		/**
+		 * @return a function reading the column's array directly, so scans do
+		 * not go through a virtual call per row
+		 */
+		IntToLongFunction longs() {
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " is not integral");
+		}
+
+		IntToDoubleFunction doubles() {
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " is not numeric");
+		}
+	}
+
+	static final class IntColumn extends Column {
+
+		private final Class<?> type;
+		int[] values;
+
+		IntColumn(Class<?> type, int capacity) {
+			this.type = type;
+			this.values = new int[capacity];
+		}
+
+		void grow(int capacity)     { values = Arrays.copyOf(values, capacity); }
+
+		IntToLongFunction longs() {
+			final int[] values = this.values;
+			return row -> values[row];
+		}
+
+		IntToDoubleFunction doubles() {
+			final int[] values = this.values;
+			return row -> values[row];
+		}
+
+		RowComparator comparator() {
+			final int[] values = this.values;
+			return (a, b) -> Integer.compare(values[a], values[b]);
+		}
+
+		Object get(int row) {
+			int value = values[row];
+			if (type == int.class)     return value;
+			if (type == boolean.class) return value != 0;
+			if (type == short.class)   return (short)value;
+			if (type == byte.class)    return (byte)value;
+			return (char)value;
+		}
+
+		void set(int row, Object value) {
+			if (value instanceof Boolean)
+				values[row] = (Boolean)value ? 1 : 0;
+			else if (value instanceof Character)
+				values[row] = (Character)value;
+			else
+				values[row] = ((Number)value).intValue();
+		}
+	}
+
+	static final class LongColumn extends Column {
+
+		long[] values;
+
+		LongColumn(int capacity) {
+			this.values = new long[capacity];
+		}
+
+		void grow(int capacity)           { values = Arrays.copyOf(values, capacity); }
+		Object get(int row)               { return values[row]; }
+		void set(int row, Object value)   { values[row] = (Long)value; }
+
+		IntToLongFunction longs() {
+			final long[] values = this.values;
+			return row -> values[row];
+		}
+
+		IntToDoubleFunction doubles() {
+			final long[] values = this.values;
+			return row -> values[row];
+		}
+
+		RowComparator comparator() {
+			final long[] values = this.values;
+			return (a, b) -> Long.compare(values[a], values[b]);
+		}
+	}
+
+	static final class DoubleColumn extends Column {
+
+		private final boolean isFloat;
+		double[] values;
+
+		DoubleColumn(Class<?> type, int capacity) {
+			this.isFloat = type == float.class;
+			this.values = new double[capacity];
+		}
+
+		void grow(int capacity)           { values = Arrays.copyOf(values, capacity); }
+		Object get(int row)               { return isFloat ? (Object)(float)values[row] : (Object)values[row]; }
+		void set(int row, Object value)   { values[row] = ((Number)value).doubleValue(); }
+
+		IntToDoubleFunction doubles() {
+			final double[] values = this.values;
+			return row -> values[row];
+		}
+
+		RowComparator comparator() {
+			final double[] values = this.values;
+			return (a, b) -> Double.compare(values[a], values[b]);
+		}
+	}
+
+	static final class StringColumn extends Column {
+
+		final List<String> dictionary = new ArrayList<String>();
+		private final Map<String,Integer> codesByValue = new HashMap<String,Integer>();
+		int[] codes;
+
+		StringColumn(int capacity) {
+			this.codes = new int[capacity];
+			Arrays.fill(codes, -1);
+		}
+
+		void grow(int capacity) {
+			int previous = codes.length;
+			codes = Arrays.copyOf(codes, capacity);
+			Arrays.fill(codes, previous, capacity, -1);
+		}
+
+		Object get(int row) {
+			int code = codes[row];
+			return code < 0 ? null : dictionary.get(code);
+		}
+
+		void set(int row, Object value) {
+			if (value == null) {
+				codes[row] = -1;
+				return;
+			}
+			Integer code = codesByValue.get(value);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add((String)value);
+				codesByValue.put((String)value, code);
+			}
+			codes[row] = code;
+		}
+
+		/**
+		 * Ranks the dictionary once, so rows compare as plain ints.
+		 */
+		RowComparator comparator() {
+			Integer[] order = new Integer[dictionary.size()];
+			for (int code = 0; code < order.length; code++)
+				order[code] = code;
+			Arrays.sort(order, (a, b) -> dictionary.get(a).compareTo(dictionary.get(b)));
+			final int[] ranks = new int[order.length];
+			for (int rank = 0; rank < order.length; rank++)
+				ranks[order[rank]] = rank;
+			final int[] codes = this.codes;
+			return (a, b) -> Integer.compare(codes[a] < 0 ? -1 : ranks[codes[a]], codes[b] < 0 ? -1 : ranks[codes[b]]);
+		}
+	}
+
+	static final class ObjectColumn extends Column {
+
+		Object[] values;
+
+		ObjectColumn(int capacity) {
+			this.values = new Object[capacity];
+		}
+
+		void grow(int capacity)           { values = Arrays.copyOf(values, capacity); }
+		Object get(int row)               { return values[row]; }
+		void set(int row, Object value)   { values[row] = value; }
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		RowComparator comparator() {
+			final Object[] values = this.values;
+			return (a, b) -> {
+				Comparable left = (Comparable)values[a];
+				Comparable right = (Comparable)values[b];
+				if (left == null || right == null)
+					return left == right ? 0 : left == null ? -1 : 1;
+				return left.compareTo(right);
+			};
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrencyLimitProxy bounds the number of calls in flight against a target,
+ * and adjusts that bound to the latency the target is showing.
+ *
+ * The limit follows a gradient: the ratio of the best latency seen recently
+ * (the target's no-load latency) to the latest sample. While latency stays
+ * near the no-load figure the limit grows by roughly its square root, which
+ * is the queue Little's law allows at that latency; once latency climbs the
+ * limit shrinks in proportion, down to {@code minLimit}.
+ *
+ * Permits are taken with a compare-and-set on a single counter, and nothing on
+ * a call's way in or out blocks on a lock: the lowest latency is kept with a
+ * compare-and-set too, and a completed call updates the limit only if no other
+ * call is doing so at that moment, otherwise its sample is dropped. A call over
+ * the limit either fails at once with a {@link RejectedExecutionException} or,
+ * when a queue is configured, waits up to {@code maxQueueWaitMillis} behind at
+ * most {@code maxQueue} other waiting calls before failing the same way.
+ */
+class ConcurrencyLimitProxy implements InvocationHandler {
+
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+	public static final int DEFAULT_MAX_LIMIT = 1000;
+
+	// how much of each new estimate is folded into the limit
+	private static final double SMOOTHING = 0.2;
+
+	// samples after which the no-load latency is re-learned, so it can drift upwards
+	private static final int NO_LOAD_WINDOW = 1000;
+
+	private final Object target;
+	private final int minLimit;
+	private final int maxLimit;
+	private final int maxQueue;
+	private final long maxQueueWaitNanos;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	private final Object waiters = new Object();
+
+	private volatile int limit;
+
+	private final AtomicLong noLoadNanos = new AtomicLong(Long.MAX_VALUE);
+
+	// guarded by estimator, which is only ever tried, never waited for
+	private final ReentrantLock estimator = new ReentrantLock();
+	private double estimate;
+	private int samples;
+
+	public ConcurrencyLimitProxy(Object target, int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxQueueWaitMillis) {
+		if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit)
+			throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+		this.target = target;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.maxQueue = maxQueue;
+		this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+		this.limit = initialLimit;
+		this.estimate = initialLimit;
+	}
+
+	// Factories
+
+	public static <T> T create(Class<T> interfaceClass, T target) {
+		return create(interfaceClass, target, DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT, 0, 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target, int initialLimit, int minLimit, int maxLimit,
+			int maxQueue, long maxQueueWaitMillis) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new ConcurrencyLimitProxy(target, initialLimit, minLimit, maxLimit, maxQueue, maxQueueWaitMillis));
+	}
+
+	public static Stats stats(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof ConcurrencyLimitProxy == false)
+			throw new IllegalArgumentException("not a concurrency limit proxy: " + proxy);
+		return ((ConcurrencyLimitProxy)handler).new Stats();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		if (method.getDeclaringClass() == Object.class)
+			return call(method, args);
+
+		if (tryAcquire() == false && awaitPermit() == false) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("concurrency limit of " + limit + " reached");
+		}
+
+		long started = System.nanoTime();
+		try {
+			return call(method, args);
+		} finally {
+			int observed = inFlight.get();
+			release();
+			sample(System.nanoTime() - started, observed);
+		}
+	}
+
+	private Object call(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Permits
+
+	private boolean tryAcquire() {
+		for (;;) {
+			int current = inFlight.get();
+			if (current >= limit)
+				return false;
+			if (inFlight.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	private boolean awaitPermit() {
+		if (queued.incrementAndGet() > maxQueue) {
+			queued.decrementAndGet();
+			return false;
+		}
+		try {
+			long deadline = System.nanoTime() + maxQueueWaitNanos;
+			synchronized (waiters) {
+				while (tryAcquire() == false) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+						return false;
+					TimeUnit.NANOSECONDS.timedWait(waiters, remaining);
+				}
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			queued.decrementAndGet();
+		}
+	}
+
+	private void release() {
+		inFlight.decrementAndGet();
+		if (queued.get() > 0) {
+			synchronized (waiters) {
+				waiters.notify();
+			}
+		}
+	}
+
+	// Limit estimation
+
+	private void sample(long rttNanos, int observedInFlight) {
+		// only a new minimum writes the shared word
+		long noLoad = noLoadNanos.get();
+		if (rttNanos < noLoad)
+			noLoad = noLoadNanos.accumulateAndGet(rttNanos, Math::min);
+		if (estimator.tryLock() == false)
+			return;
+		try {
+			if (++samples >= NO_LOAD_WINDOW) {
+				samples = 0;
+				noLoadNanos.set(noLoad = rttNanos);
+			}
+
+			double gradient = Math.max(0.5, Math.min(1.0, (double)noLoad / Math.max(1, rttNanos)));
+
+			// a target that is not being kept busy tells us nothing about a larger limit
+			if (gradient >= 1.0 && observedInFlight * 2 < estimate)
+				return;
+
+			double proposed = estimate * gradient + Math.sqrt(estimate);
+			estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + proposed * SMOOTHING));
+
+			int previous = limit;
+			limit = (int)estimate;
+			if (limit > previous && queued.get() > 0) {
+				synchronized (waiters) {
+					waiters.notifyAll();
+				}
+			}
+		} finally {
+			estimator.unlock();
+		}
+	}
+
+	/**
+	 * Stats is a live view of the proxy's limit and counters.
+	 */
+	public class Stats {
+		public int getLimit()          { return limit; }
+		public int getInFlight()       { return inFlight.get(); }
+		public int getQueued()         { return queued.get(); }
+		public long getRejected()      { return rejected.get(); }
+
+		public long getNoLoadLatencyNanos() {
+			long nanos = noLoadNanos.get();
+			return nanos == Long.MAX_VALUE ? 0 : nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("limit=%d inFlight=%d queued=%d rejected=%d",
+				getLimit(), getInFlight(), getQueued(), getRejected());
+		}
+	}
+
+}
@@ -0,0 +1,278 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+/**
+ * CopyOnWriteProxy gives each caller a private, writable view of a shared
+ * original object. Getters read through to the original until the matching
+ * setter is called on the proxy, after which the proxy answers from its own
+ * overrides and the original is left untouched. Any other method is invoked
+ * on the original.
+ *
+ * Views can be forked, as in tenant, then request, then sub-call:
+ *
+ * {@code
+ * IConfig tenant  = CopyOnWriteProxy.create(IConfig.class, shared);
+ * IConfig request = CopyOnWriteProxy.fork(tenant);
+ * IConfig subcall = CopyOnWriteProxy.fork(request);
+ * }
+ *
+ * Forking freezes the overrides made so far into an immutable {@link Layer}
+ * shared by parent and child. Every layer holds only the properties it
+ * overrides itself, so a fork costs memory in proportion to what it changes,
+ * however wide the interface. A lookup walks the chain from the newest layer
+ * down, and once a chain grows past {@code flattenDepth} layers the next
+ * frozen layer is flattened onto the original, which keeps lookups short and
+ * lets old layers be collected.
+ *
+ * A single view is not thread-safe, but its forks may be handed to other
+ * threads since everything they share is immutable.
+ */
+class CopyOnWriteProxy implements InvocationHandler {
+
+	public static final int DEFAULT_FLATTEN_DEPTH = 8;
+
+	private static final int[] NO_SLOTS = new int[0];
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private final Object original;
+	private final Class<?> interfaceClass;
+	private final PropertySlots slots;
+	private final int flattenDepth;
+
+	// frozen overrides shared with other forks, or null when there are none
+	private Layer parent;
+
+	// overrides made through this view since it was created or last forked
+	private int[] writtenSlots = NO_SLOTS;
+	private Object[] writtenValues = NO_VALUES;
+	private int written;
+
+	public CopyOnWriteProxy(Class<?> interfaceClass, Object original) {
+		this(interfaceClass, original, null, DEFAULT_FLATTEN_DEPTH);
+	}
+
+	private CopyOnWriteProxy(Class<?> interfaceClass, Object original, Layer parent, int flattenDepth) {
+		this.original = original;
+		this.interfaceClass = interfaceClass;
+		this.slots = PropertySlots.of(interfaceClass);
+		this.parent = parent;
+		this.flattenDepth = flattenDepth;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		int slot = slots.setterSlot(method);
+		if (slot >= 0) {
+			write(slot, args[0]);
+			return null;
+		}
+
+		slot = slots.getterSlot(method);
+		if (slot >= 0) {
+			Object value = read(slot);
+			if (value != Layer.UNSET)
+				return value;
+		}
+
+		return method.invoke(original, args);
+	}
+
+	// Factories
+
+	public static <T> T create(Class<T> interfaceClass, Object original) {
+		return create(interfaceClass, original, DEFAULT_FLATTEN_DEPTH);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, Object original, int flattenDepth) {
+		return (T)newProxy(new CopyOnWriteProxy(interfaceClass, original, null, flattenDepth));
+	}
+
+	/**
+	 * @return a new view that starts with every override visible through the given
+	 * view, and whose own writes are invisible to it (and vice versa)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T fork(T proxy) {
+		CopyOnWriteProxy handler = handlerOf(proxy);
+		return (T)newProxy(new CopyOnWriteProxy(handler.interfaceClass, handler.original, handler.freeze(), handler.flattenDepth));
+	}
+
+	/**
+	 * Collapses the chain of layers beneath the view into a single layer that sits
+	 * directly on the original, releasing the view's hold on its ancestors.
+	 */
+	public static void flatten(Object proxy) {
+		CopyOnWriteProxy handler = handlerOf(proxy);
+		Layer frozen = handler.freeze();
+		handler.parent = frozen == null ? null : frozen.flatten();
+	}
+
+	/**
+	 * Writes every override visible through the view onto the original, using its
+	 * setters, and leaves the view reading through to the original again. Other
+	 * views of the same original keep any overrides of their own.
+	 */
+	public static void commit(Object proxy) {
+		CopyOnWriteProxy handler = handlerOf(proxy);
+		Layer frozen = handler.freeze();
+		if (frozen != null) {
+			Layer flat = frozen.flatten();
+			for (int i = 0; i < flat.slots.length; i++) {
+				if (handler.slots.setter(flat.slots[i]) != null)
+					handler.applyToOriginal(flat.slots[i], flat.values[i]);
+			}
+		}
+		handler.parent = null;
+	}
+
+	/**
+	 * @return the number of layers beneath the view, not counting its own writes
+	 */
+	public static int depth(Object proxy) {
+		Layer parent = handlerOf(proxy).parent;
+		return parent == null ? 0 : parent.depth;
+	}
+
+	// Implementation support
+
+	private static Object newProxy(CopyOnWriteProxy handler) {
+		return Proxy.newProxyInstance(handler.original.getClass().getClassLoader(), new Class<?>[] { handler.interfaceClass }, handler);
+	}
+
+	private static CopyOnWriteProxy handlerOf(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof CopyOnWriteProxy == false)
+			throw new IllegalArgumentException("not a copy-on-write proxy: " + proxy);
+		return (CopyOnWriteProxy)handler;
+	}
+
+	private Object read(int slot) {
+		for (int i = written - 1; i >= 0; i--) {
+			if (writtenSlots[i] == slot)
+				return writtenValues[i];
+		}
+		return parent == null ? Layer.UNSET : parent.lookup(slot);
+	}
+
+	private void write(int slot, Object value) {
+		for (int i = 0; i < written; i++) {
+			if (writtenSlots[i] == slot) {
+				writtenValues[i] = value;
+				return;
+			}
+		}
+		if (written == writtenSlots.length) {
+			int capacity = Math.max(2, written * 2);
+			writtenSlots = Arrays.copyOf(writtenSlots, capacity);
+			writtenValues = Arrays.copyOf(writtenValues, capacity);
+		}
+		writtenSlots[written] = slot;
+		writtenValues[written] = value;
+		written++;
+	}
+
+	/**
+	 * Moves this view's own writes into a new immutable layer, which becomes the
+	 * view's parent, and returns it.
+	 */
+	private Layer freeze() {
+		if (written != 0) {
+			Layer layer = new Layer(parent, slots.size(),
+				Arrays.copyOf(writtenSlots, written), Arrays.copyOf(writtenValues, written));
+			parent = layer.depth > flattenDepth ? layer.flatten() : layer;
+			writtenSlots = NO_SLOTS;
+			writtenValues = NO_VALUES;
+			written = 0;
+		}
+		return parent;
+	}
+
+	private void applyToOriginal(int slot, Object value) {
+		try {
+			slots.setterHandle(slot).invokeExact(original, value);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * Layer is one frozen set of overrides on top of an optional parent layer.
+	 * Layers never change once built, so any number of views may share them.
+	 */
+	static final class Layer {
+
+		static final Object UNSET = new Object();
+
+		final Layer parent;
+		final int depth;
+		final int width;
+		final int[] slots;
+		final Object[] values;
+
+		Layer(Layer parent, int width, int[] slots, Object[] values) {
+			this.parent = parent;
+			this.depth = parent == null ? 1 : parent.depth + 1;
+			this.width = width;
+			this.slots = slots;
+			this.values = values;
+		}
+
+		/**
+		 * @return the value the newest layer holding the slot gives it, or
+		 * {@link #UNSET} if no layer in the chain overrides it
+		 */
+		Object lookup(int slot) {
+			for (Layer layer = this; layer != null; layer = layer.parent) {
+				for (int i = 0; i < layer.slots.length; i++) {
+					if (layer.slots[i] == slot)
+						return layer.values[i];
+				}
+			}
+			return UNSET;
+		}
+
+		/**
+		 * @return an equivalent layer with no parent, holding only the overridden slots
+		 */
+		Layer flatten() {
+			if (parent == null)
+				return this;
+
+			// the only place a full-width array is built, and only for the duration
+			Object[] merged = new Object[width];
+			Arrays.fill(merged, UNSET);
+			int count = 0;
+			for (Layer layer = this; layer != null; layer = layer.parent) {
+				for (int i = 0; i < layer.slots.length; i++) {
+					if (merged[layer.slots[i]] == UNSET) {
+						merged[layer.slots[i]] = layer.values[i];
+						count++;
+					}
+				}
+			}
+
+			int[] flatSlots = new int[count];
+			Object[] flatValues = new Object[count];
+			for (int slot = 0, i = 0; slot < merged.length; slot++) {
+				if (merged[slot] != UNSET) {
+					flatSlots[i] = slot;
+					flatValues[i++] = merged[slot];
+				}
+			}
+			return new Layer(null, width, flatSlots, flatValues);
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+package com.rac.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DeadlineProxy stops a hung call from holding its caller's thread forever.
+ * Every call runs on a worker (a virtual thread where available, see
+ * {@link VirtualThreads}) while the caller waits for at most the call's time
+ * budget; when the budget runs out the caller gets a
+ * {@link DeadlineExceededException} and the worker is interrupted.
+ *
+ * {@code
+ * IBackend backend = DeadlineProxy.create(IBackend.class, target, 500, TimeUnit.MILLISECONDS);
+ * }
+ *
+ * The budget is the method's {@link Timeout}, if annotated, or the proxy's
+ * default, further limited by any deadline already in force on the calling
+ * thread: one set with {@link #withDeadline}, or inherited from an outer
+ * deadline-proxied call. The worker runs with the call's deadline in force,
+ * so calls it makes through other deadline proxies share what is left of the
+ * budget rather than starting afresh. Long-running targets can check
+ * {@link #remainingNanos()} to give up early on their own.
+ *
+ * Deadlines are kept in a thread-local set and restored around each scope, as
+ * {@code ScopedValue} is not available on the JDKs this project targets.
+ * Timeouts are scheduled on one shared {@link HashedTimingWheel} with a
+ * one-millisecond tick, rather than as a scheduler task per call.
+ */
+class DeadlineProxy implements InvocationHandler {
+
+	/**
+	 * Sets the time budget of one method, overriding the proxy's default.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Timeout {
+		long value();
+		TimeUnit unit() default TimeUnit.MILLISECONDS;
+	}
+
+	/**
+	 * DeadlineExceededException is thrown to the caller of a call that ran out of time.
+	 */
+	@SuppressWarnings("serial")
+	public static class DeadlineExceededException extends RuntimeException {
+		public DeadlineExceededException(String message) {
+			super(message);
+		}
+	}
+
+	private static final long NONE = Long.MAX_VALUE;
+
+	private static final ThreadLocal<long[]> DEADLINE = ThreadLocal.withInitial(() -> new long[] { NONE });
+
+	private static final HashedTimingWheel wheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 1024);
+
+	private final Object target;
+	private final long defaultNanos;
+	private final Executor executor;
+	private final Stats stats = new Stats();
+
+	public DeadlineProxy(Object target, long timeout, TimeUnit unit, Executor executor) {
+		if (timeout <= 0)
+			throw new IllegalArgumentException("timeout must be positive");
+		this.target = target;
+		this.defaultNanos = unit.toNanos(timeout);
+		this.executor = executor;
+	}
+
+	// Factories
+
+	public static <T> T create(Class<T> interfaceClass, T target, long timeout, TimeUnit unit) {
+		return create(interfaceClass, target, timeout, unit, VirtualThreads.executor());
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target, long timeout, TimeUnit unit, Executor executor) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new DeadlineProxy(target, timeout, unit, executor));
+	}
+
+	public static Stats stats(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof DeadlineProxy == false)
+			throw new IllegalArgumentException("not a deadline proxy: " + proxy);
+		return ((DeadlineProxy)handler).stats;
+	}
+
+	// Deadlines
+
+	/**
+	 * Runs the task with a deadline in force on the current thread, or the one
+	 * already in force if that is sooner.
+	 */
+	public static <V> V withDeadline(long timeout, TimeUnit unit, Callable<V> task) throws Exception {
+		long[] deadline = DEADLINE.get();
+		long outer = deadline[0];
+		deadline[0] = Math.min(outer, after(System.nanoTime(), unit.toNanos(timeout)));
+		try {
+			return task.call();
+		} finally {
+			deadline[0] = outer;
+		}
+	}
+
+	/**
+	 * @return the time left before the deadline in force on the current thread,
+	 * or {@code Long.MAX_VALUE} if there is none
+	 */
+	public static long remainingNanos() {
+		long deadline = DEADLINE.get()[0];
+		return deadline == NONE ? NONE : deadline - System.nanoTime();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return method.invoke(target, args);
+
+		long now = System.nanoTime();
+		long deadline = Math.min(DEADLINE.get()[0], after(now, budgetOf(method)));
+		if (deadline != NONE && deadline - now <= 0) {
+			stats.expired.incrementAndGet();
+			throw new DeadlineExceededException(method.getName() + ": no time left before the call");
+		}
+
+		stats.calls.incrementAndGet();
+		Call call = new Call(method, args, deadline);
+		HashedTimingWheel.Timeout timeout = deadline == NONE ? null
+			: wheel.schedule(call::expire, deadline - now, TimeUnit.NANOSECONDS);
+		executor.execute(call);
+		try {
+			return call.result.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		} catch (InterruptedException e) {
+			call.cancel();
+			throw e;
+		} finally {
+			if (timeout != null)
+				timeout.cancel();
+		}
+	}
+
+	/**
+	 * @return the deadline the given time after now, or {@code NONE} if it is
+	 * too far off to count up to
+	 */
+	private static long after(long now, long nanos) {
+		long deadline = now + nanos;
+		return ((now ^ deadline) & (nanos ^ deadline)) < 0 ? NONE : deadline;
+	}
+
+	private long budgetOf(Method method) {
+		Timeout timeout = method.getAnnotation(Timeout.class);
+		return timeout == null ? defaultNanos : timeout.unit().toNanos(timeout.value());
+	}
+
+	/**
+	 * Call is one invocation on a worker. It keeps track of the thread running
+	 * it so that expiry, or the caller giving up, can interrupt that thread,
+	 * and only while the call is in progress.
+	 */
+	private final class Call implements Runnable {
+
+		final Method method;
+		final Object[] args;
+		final long deadline;
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+		private Thread runner;
+
+		Call(Method method, Object[] args, long deadline) {
+			this.method = method;
+			this.args = args;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public void run() {
+			if (result.isDone())
+				return;
+
+			long[] inherited = DEADLINE.get();
+			long outer = inherited[0];
+			inherited[0] = deadline;
+			synchronized (this) { runner = Thread.currentThread(); }
+			try {
+				result.complete(method.invoke(target, args));
+			} catch (InvocationTargetException e) {
+				result.completeExceptionally(e.getCause());
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			} finally {
+				synchronized (this) { runner = null; }
+				inherited[0] = outer;
+				// swallow an interrupt that raced with completion
+				Thread.interrupted();
+			}
+		}
+
+		void expire() {
+			if (result.completeExceptionally(new DeadlineExceededException(method.getName() + " ran out of time"))) {
+				stats.expired.incrementAndGet();
+				interruptRunner();
+			}
+		}
+
+		/**
+		 * Abandons the call for a caller that was interrupted while waiting.
+		 */
+		void cancel() {
+			if (result.cancel(false))
+				interruptRunner();
+		}
+
+		private synchronized void interruptRunner() {
+			if (runner != null)
+				runner.interrupt();
+		}
+	}
+
+	/**
+	 * Stats counts calls made and calls that ran out of time.
+	 */
+	public static class Stats {
+
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong expired = new AtomicLong();
+
+		public long getCalls()      { return calls.get(); }
+		public long getExpired()    { return expired.get(); }
+
+		@Override
+		public String toString() {
+			return String.format("calls=%d expired=%d", getCalls(), getExpired());
+		}
+	}
+
+}
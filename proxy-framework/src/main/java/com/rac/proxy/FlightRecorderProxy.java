@@ -0,0 +1,144 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * FlightRecorderProxy reports calls on its target as Java Flight Recorder
+ * events, so slow calls show up in JMC next to the GC pauses, lock contention
+ * and I/O that happened at the same moment:
+ *
+ * {@code
+ * IStore store = FlightRecorderProxy.create(IStore.class, target, 1, TimeUnit.MILLISECONDS, 1);
+ * }
+ *
+ * Each event is a {@value #EVENT_NAME} with the interface, the method, the
+ * call's duration, the class of anything it threw, and the identity hash of
+ * the target (to tell instances apart). Events are written only for calls that
+ * take at least the proxy's threshold, and only for one call in
+ * {@code sampleEvery}, picked at random per thread so callers share no
+ * counter; JFR's own {@code threshold} and {@code enabled} settings for the
+ * event apply on top of that.
+ *
+ * When no recording has the event enabled, a call costs one read of the event
+ * type's enabled flag beyond the reflective call itself, and allocates nothing.
+ */
+class FlightRecorderProxy implements InvocationHandler {
+
+	public static final String EVENT_NAME = "com.rac.proxy.Call";
+
+	private static final EventType CALL_EVENT = EventType.getEventType(CallEvent.class);
+
+	private final Object target;
+	private final Class<?> interfaceClass;
+	private final long thresholdNanos;
+	private final int sampleEvery;
+
+	public FlightRecorderProxy(Class<?> interfaceClass, Object target, long threshold, TimeUnit unit, int sampleEvery) {
+		if (sampleEvery < 1)
+			throw new IllegalArgumentException("sampleEvery must be at least 1");
+		this.target = target;
+		this.interfaceClass = interfaceClass;
+		this.thresholdNanos = unit.toNanos(threshold);
+		this.sampleEvery = sampleEvery;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		if (CALL_EVENT.isEnabled() == false)
+			return call(method, args);
+		if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0)
+			return call(method, args);
+
+		CallEvent event = new CallEvent();
+
+		Throwable thrown = null;
+		long started = System.nanoTime();
+		event.begin();
+		try {
+			return call(method, args);
+		} catch (Throwable t) {
+			thrown = t;
+			throw t;
+		} finally {
+			event.end();
+			if (System.nanoTime() - started >= thresholdNanos && event.shouldCommit()) {
+				event.interfaceClass = interfaceClass;
+				event.method = method.getName();
+				event.exception = thrown == null ? null : thrown.getClass();
+				event.targetIdentity = System.identityHashCode(target);
+				event.commit();
+			}
+		}
+	}
+
+	private Object call(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Factories
+
+	/**
+	 * @return a proxy that reports every call
+	 */
+	public static <T> T create(Class<T> interfaceClass, T target) {
+		return create(interfaceClass, target, 0, TimeUnit.NANOSECONDS, 1);
+	}
+
+	/**
+	 * @return a proxy that reports every {@code sampleEvery}th call taking at
+	 * least the threshold
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target, long threshold, TimeUnit unit, int sampleEvery) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new FlightRecorderProxy(interfaceClass, target, threshold, unit, sampleEvery));
+	}
+
+	/**
+	 * CallEvent is one proxied call. Stack traces are off by default to keep the
+	 * event cheap; a recording can turn them on with the event's
+	 * {@code stackTrace} setting.
+	 */
+	@Name(EVENT_NAME)
+	@Label("Proxy Call")
+	@Category("Proxy Framework")
+	@Description("A call made through a FlightRecorderProxy")
+	@StackTrace(false)
+	static class CallEvent extends Event {
+
+		@Label("Interface")
+		Class<?> interfaceClass;
+
+		@Label("Method")
+		String method;
+
+		@Label("Exception")
+		@Description("Class of the exception the call threw, if any")
+		Class<?> exception;
+
+		@Label("Target Identity")
+		@Description("Identity hash code of the target object")
+		int targetIdentity;
+	}
+
+}
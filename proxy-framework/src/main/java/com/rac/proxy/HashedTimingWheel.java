@@ -0,0 +1,189 @@
+package com.rac.proxy;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HashedTimingWheel runs tasks after a delay with coarse precision, at a cost
+ * that does not grow with the number of tasks waiting. It suits timeouts that
+ * are set on every call and almost always cancelled:
+ *
+ * {@code
+ * HashedTimingWheel.Timeout timeout = wheel.schedule(task, 250, TimeUnit.MILLISECONDS);
+ * ...
+ * timeout.cancel();
+ * }
+ *
+ * The wheel is a ring of buckets, one per tick. A task lands in the bucket its
+ * deadline hashes to, along with the number of full turns of the wheel still
+ * to wait. A single daemon thread advances one bucket per tick and runs the
+ * tasks that are due, so a task runs within about one tick after its delay.
+ *
+ * Scheduling only adds the task to a lock-free queue, which the wheel thread
+ * empties into buckets at each tick, and cancelling only flips the task's
+ * state; cancelled tasks are dropped when their bucket next comes round. Tasks
+ * run on the wheel thread, so they must be short.
+ */
+class HashedTimingWheel {
+
+	// a tick moves at most this many new tasks into buckets, so one burst cannot stall it
+	private static final int MAX_TRANSFER = 100000;
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+	private final long start = System.nanoTime();
+	private final Thread worker;
+	private volatile boolean stopped;
+	private long tick;	// worker only
+
+	public HashedTimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0)
+			throw new IllegalArgumentException("tickDuration must be positive");
+		if (ticksPerWheel < 1 || Integer.bitCount(ticksPerWheel) != 1)
+			throw new IllegalArgumentException("ticksPerWheel must be a power of two");
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Bucket[ticksPerWheel];
+		for (int i = 0; i < ticksPerWheel; i++)
+			wheel[i] = new Bucket();
+		this.mask = ticksPerWheel - 1;
+		this.worker = VirtualThreads.daemonThreads().newThread(this::run);
+		worker.setName("timing-wheel");
+		worker.start();
+	}
+
+	/**
+	 * @return a handle that can cancel the task before it runs
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (stopped)
+			throw new IllegalStateException("timing wheel is stopped");
+		long elapsed = System.nanoTime() - start;
+		long nanos = Math.max(0, unit.toNanos(delay));
+		// a delay too long to count up to never comes due
+		Timeout timeout = new Timeout(task, nanos > Long.MAX_VALUE - elapsed ? Long.MAX_VALUE : elapsed + nanos);
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Stops the wheel thread; tasks not yet run never will be.
+	 */
+	public void stop() {
+		stopped = true;
+		LockSupport.unpark(worker);
+	}
+
+	private void run() {
+		while (stopped == false) {
+			long due = (tick + 1) * tickNanos;
+			long now;
+			while ((now = System.nanoTime() - start) < due && stopped == false)
+				LockSupport.parkNanos(due - now);
+
+			transfer();
+			wheel[(int)(tick & mask)].expire(now);
+			tick++;
+		}
+	}
+
+	private void transfer() {
+		for (int i = 0; i < MAX_TRANSFER; i++) {
+			Timeout timeout = added.poll();
+			if (timeout == null)
+				return;
+			if (timeout.state.get() != Timeout.WAITING)
+				continue;
+
+			long ticks = timeout.deadline / tickNanos;
+			long target = Math.max(ticks, tick);	// overdue tasks run at this tick
+			timeout.rounds = (target - tick) / wheel.length;
+			wheel[(int)(target & mask)].add(timeout);
+		}
+	}
+
+	/**
+	 * Timeout is one scheduled task.
+	 */
+	public static final class Timeout {
+
+		static final int WAITING = 0, CANCELLED = 1, EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+
+		// worker only
+		private long rounds;
+		private Timeout next;
+		private Timeout previous;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * @return true if the task will not run because of this call
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(WAITING, CANCELLED);
+		}
+
+		public boolean isCancelled()   { return state.get() == CANCELLED; }
+		public boolean isExpired()     { return state.get() == EXPIRED; }
+	}
+
+	/**
+	 * Bucket is the doubly linked list of timeouts in one slot of the wheel.
+	 */
+	private static final class Bucket {
+
+		private Timeout head;
+
+		void add(Timeout timeout) {
+			timeout.next = head;
+			timeout.previous = null;
+			if (head != null)
+				head.previous = timeout;
+			head = timeout;
+		}
+
+		void expire(long now) {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.state.get() == Timeout.CANCELLED) {
+					remove(timeout);
+				} else if (timeout.rounds <= 0 && timeout.deadline <= now) {
+					remove(timeout);
+					if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+						try {
+							timeout.task.run();
+						} catch (RuntimeException e) {
+							// one failing task must not stop the wheel
+						}
+					}
+				} else {
+					timeout.rounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		private void remove(Timeout timeout) {
+			if (timeout.previous != null)
+				timeout.previous.next = timeout.next;
+			else
+				head = timeout.next;
+			if (timeout.next != null)
+				timeout.next.previous = timeout.previous;
+			timeout.next = timeout.previous = null;
+		}
+	}
+
+}
@@ -0,0 +1,262 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HedgingProxy trims the tail latency of reads against replicated targets. A
+ * call goes to one replica first (in turn); if no answer has come back after
+ * the hedge delay, the same call is sent to the next replica as well, and
+ * whichever answers first wins. The loser is cancelled, which interrupts it
+ * if it is still running.
+ *
+ * {@code
+ * IStore store = HedgingProxy.create(IStore.class, replicas, HedgingProxy.ADAPTIVE, 5);
+ * }
+ *
+ * The delay is either fixed, or {@link #ADAPTIVE}: the 95th percentile of the
+ * latencies recently observed, so only the slowest calls are hedged. Hedges
+ * are also limited to a percentage of calls, with a small burst allowance, so
+ * a slow cluster cannot be swamped by the hedges themselves.
+ *
+ * Only reads are hedged: getters, and methods annotated with
+ * {@link StampedLockProxy.Read}, which must be idempotent. Any other method is
+ * a write, and is called once, on the first replica (the primary), on the
+ * caller's thread and without hedging; keeping the other replicas up to date
+ * is left to the backend's own replication.
+ *
+ * The first attempt to succeed wins. A failed attempt only decides the call
+ * when no other attempt is still running, so a fast failure cannot beat a slow
+ * success; when both fail, the first failure is thrown.
+ */
+class HedgingProxy implements InvocationHandler {
+
+	public static final long ADAPTIVE = -1;
+
+	// delay used by an adaptive proxy until it has seen enough calls
+	private static final long INITIAL_ADAPTIVE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	// hedges that may be sent back to back, on top of the steady budget
+	private static final int BURST = 10;
+
+	private static final int SAMPLES = 256;
+	private static final int RECOMPUTE_EVERY = 32;
+
+	private final Object[] targets;
+	private final Map<Method,Boolean> reads = new ConcurrentHashMap<Method,Boolean>();
+	private final ExecutorService executor;
+	private final boolean adaptive;
+	private final int budgetPercent;
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicLong credit = new AtomicLong(BURST * 100L);
+	private final Stats stats = new Stats();
+
+	private volatile long delayNanos;
+
+	// recent latencies as a ring, guarded by itself
+	private final long[] samples = new long[SAMPLES];
+	private int sampleAt;	// the next slot to fill
+	private int sampled;	// slots filled so far, up to SAMPLES
+	private int unsorted;	// samples since the delay was last computed
+
+	public HedgingProxy(List<?> targets, ExecutorService executor, long delayMillis, int budgetPercent) {
+		if (targets.size() < 2)
+			throw new IllegalArgumentException("hedging needs at least two targets");
+		if (budgetPercent < 0 || budgetPercent > 100)
+			throw new IllegalArgumentException("budgetPercent must be between 0 and 100");
+		this.targets = targets.toArray();
+		this.executor = executor;
+		this.adaptive = delayMillis == ADAPTIVE;
+		this.delayNanos = adaptive ? INITIAL_ADAPTIVE_NANOS : TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		this.budgetPercent = budgetPercent;
+	}
+
+	// Factories
+
+	public static <T> T create(Class<T> interfaceClass, List<? extends T> targets, long delayMillis, int budgetPercent) {
+		return create(interfaceClass, targets, VirtualThreads.executor(), delayMillis, budgetPercent);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, List<? extends T> targets, ExecutorService executor,
+			long delayMillis, int budgetPercent) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new HedgingProxy(new ArrayList<T>(targets), executor, delayMillis, budgetPercent));
+	}
+
+	public static Stats stats(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof HedgingProxy == false)
+			throw new IllegalArgumentException("not a hedging proxy: " + proxy);
+		return ((HedgingProxy)handler).stats;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		if (method.getDeclaringClass() == Object.class || reads.computeIfAbsent(method, StampedLockProxy::isRead) == false)
+			return write(method, args);
+
+		stats.calls.incrementAndGet();
+		credit.accumulateAndGet(budgetPercent, (current, earned) -> Math.min(BURST * 100L, current + earned));
+
+		long started = System.nanoTime();
+		int first = Math.floorMod(next.getAndIncrement(), targets.length);
+		Call call = new Call();
+		Future<?> primary = executor.submit(attempt(call, targets[first], method, args, false));
+		Future<?> hedge = null;
+
+		try {
+			try {
+				call.result.get(delayNanos, TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				synchronized (call) {
+					if (call.result.isDone() == false && spend()) {
+						stats.hedges.incrementAndGet();
+						call.pending++;
+						hedge = executor.submit(attempt(call, targets[(first + 1) % targets.length], method, args, true));
+					}
+				}
+			}
+			Object value = call.result.get();
+			record(System.nanoTime() - started);
+			return value;
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		} finally {
+			primary.cancel(true);
+			if (hedge != null)
+				hedge.cancel(true);
+		}
+	}
+
+	/**
+	 * Calls the primary alone, since a write must not be repeated.
+	 */
+	private Object write(Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() != Object.class)
+			stats.writes.incrementAndGet();
+		try {
+			return method.invoke(targets[0], args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private Runnable attempt(final Call call, final Object target, final Method method,
+			final Object[] args, final boolean isHedge) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				Object value = null;
+				Throwable thrown = null;
+				try {
+					value = method.invoke(target, args);
+				} catch (InvocationTargetException e) {
+					thrown = e.getCause();
+				} catch (Throwable t) {
+					thrown = t;
+				}
+				// count the win before the caller can see the result
+				synchronized (call) {
+					call.pending--;
+					if (call.result.isDone())
+						return;
+					if (thrown == null) {
+						if (isHedge)
+							stats.hedgesWon.incrementAndGet();
+						call.result.complete(value);
+					} else if (call.pending > 0) {
+						if (call.failure == null)
+							call.failure = thrown;
+					} else {
+						call.result.completeExceptionally(call.failure != null ? call.failure : thrown);
+					}
+				}
+			}
+		};
+	}
+
+	private boolean spend() {
+		for (;;) {
+			long current = credit.get();
+			if (current < 100) {
+				stats.denied.incrementAndGet();
+				return false;
+			}
+			if (credit.compareAndSet(current, current - 100))
+				return true;
+		}
+	}
+
+	private void record(long latencyNanos) {
+		if (adaptive == false)
+			return;
+		synchronized (samples) {
+			samples[sampleAt] = latencyNanos;
+			sampleAt = (sampleAt + 1) % SAMPLES;
+			if (sampled < SAMPLES)
+				sampled++;
+			if (++unsorted == RECOMPUTE_EVERY) {
+				unsorted = 0;
+				long[] sorted = Arrays.copyOf(samples, sampled);
+				Arrays.sort(sorted);
+				delayNanos = sorted[(int)(sorted.length * 0.95)];
+			}
+		}
+	}
+
+	/**
+	 * Call is one hedged read: its result, and the attempts still running, both
+	 * guarded by the call itself.
+	 */
+	private static final class Call {
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+		int pending = 1;
+		Throwable failure;
+	}
+
+	/**
+	 * Stats counts reads and writes, how often hedges were sent, how often they
+	 * beat the first attempt, and how often the budget held one back.
+	 */
+	public class Stats {
+
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong writes = new AtomicLong();
+		private final AtomicLong hedges = new AtomicLong();
+		private final AtomicLong hedgesWon = new AtomicLong();
+		private final AtomicLong denied = new AtomicLong();
+
+		public long getCalls()           { return calls.get(); }
+		public long getWrites()          { return writes.get(); }
+		public long getHedges()          { return hedges.get(); }
+		public long getHedgesWon()       { return hedgesWon.get(); }
+		public long getDenied()          { return denied.get(); }
+		public long getDelayNanos()      { return delayNanos; }
+
+		@Override
+		public String toString() {
+			return String.format("calls=%d writes=%d hedges=%d won=%d denied=%d delay=%dus",
+				getCalls(), getWrites(), getHedges(), getHedgesWon(), getDenied(), getDelayNanos() / 1000);
+		}
+	}
+
+}
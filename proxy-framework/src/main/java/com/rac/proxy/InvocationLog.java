@@ -0,0 +1,223 @@
+package com.rac.proxy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * InvocationLog is an append-only binary log of method calls, written to a
+ * series of fixed-size, memory-mapped segment files in one directory. Appending
+ * a record is a handful of puts into the mapped buffer, and a new segment is
+ * started whenever the current one cannot hold the next record.
+ *
+ * Each record holds the method's id (its position in {@link #methodsOf(Class)}),
+ * the time since the log was opened, the arguments, and a hash of the result:
+ *
+ * <pre>
+ * int length | int methodId | long nanos | byte argc | args... | int resultHash
+ * </pre>
+ *
+ * Arguments are tagged by type. Primitives, their wrappers and Strings are
+ * written in full; anything else is written as null. A zero length marks the
+ * end of the records in a segment, and since a record's length is written
+ * last, a record cut short by a crash simply ends the log.
+ *
+ * Opening a log on a directory replaces any log already there.
+ */
+class InvocationLog implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	static final String PREFIX = "invocations-";
+	static final String SUFFIX = ".log";
+
+	static final byte NULL = 0, INT = 1, LONG = 2, DOUBLE = 3, FLOAT = 4, SHORT = 5, BYTE = 6, CHAR = 7, BOOLEAN = 8, STRING = 9;
+
+	// length, method id, timestamp, argument count and result hash
+	private static final int FIXED_SIZE = 4 + 4 + 8 + 1 + 4;
+
+	private final File directory;
+	private final int segmentSize;
+	private final long opened = System.nanoTime();
+
+	private MappedByteBuffer segment;
+	private int segments;
+
+	public InvocationLog(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public InvocationLog(File directory, int segmentSize) throws IOException {
+		if (directory.isDirectory() == false && directory.mkdirs() == false)
+			throw new IOException("cannot create " + directory);
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		for (File stale : segmentsOf(directory))
+			if (stale.delete() == false)
+				throw new IOException("cannot replace " + stale);
+		roll();
+	}
+
+	/**
+	 * Appends one record. Callers on many threads are serialized here.
+	 */
+	public synchronized void append(int methodId, Object[] args, int resultHash) throws IOException {
+		if (segment == null)
+			throw new IOException("invocation log is closed");
+
+		int bound = FIXED_SIZE;
+		if (args != null)
+			for (Object arg : args)
+				bound += sizeBound(arg);
+		if (bound > segmentSize)
+			throw new IOException("record of " + bound + " bytes does not fit a segment");
+
+		// leave room for the zero length that ends the segment
+		if (segment.remaining() < bound + 4)
+			roll();
+
+		int start = segment.position();
+		segment.position(start + 4);
+		segment.putInt(methodId);
+		segment.putLong(System.nanoTime() - opened);
+		segment.put((byte)(args == null ? 0 : args.length));
+		if (args != null)
+			for (Object arg : args)
+				writeValue(segment, arg);
+		segment.putInt(resultHash);
+		segment.putInt(start, segment.position() - start);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+	}
+
+	// Reading
+
+	/**
+	 * Reader receives the records of a log, in order.
+	 */
+	public interface Reader {
+		public void record(int methodId, long nanos, Object[] args, int resultHash) throws Exception;
+	}
+
+	/**
+	 * Reads every record in the log directory, segment by segment.
+	 */
+	public static void read(File directory, Reader reader) throws Exception {
+		for (File file : segmentsOf(directory)) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				MappedByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				while (segment.remaining() >= 4) {
+					int length = segment.getInt();
+					if (length == 0)
+						break;
+					int methodId = segment.getInt();
+					long nanos = segment.getLong();
+					Object[] args = new Object[segment.get()];
+					for (int i = 0; i < args.length; i++)
+						args[i] = readValue(segment);
+					reader.record(methodId, nanos, args, segment.getInt());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the interface's methods in a stable order; a method's id is its index
+	 */
+	public static Method[] methodsOf(Class<?> interfaceClass) {
+		Method[] methods = interfaceClass.getMethods();
+		Arrays.sort(methods, new Comparator<Method>() {
+			@Override
+			public int compare(Method a, Method b) {
+				return a.toGenericString().compareTo(b.toGenericString());
+			}
+		});
+		return methods;
+	}
+
+	// Implementation support
+
+	private void roll() throws IOException {
+		if (segment != null)
+			segment.force();
+		File file = new File(directory, String.format("%s%05d%s", PREFIX, segments++, SUFFIX));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(segmentSize);
+			segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+	}
+
+	static List<File> segmentsOf(File directory) {
+		List<File> files = new ArrayList<File>();
+		File[] listed = directory.listFiles();
+		if (listed != null)
+			for (File file : listed)
+				if (file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX))
+					files.add(file);
+		files.sort(Comparator.comparing(File::getName));
+		return files;
+	}
+
+	/**
+	 * @return an upper bound on the bytes {@link #writeValue} takes for the value
+	 */
+	static int sizeBound(Object arg) {
+		if (arg instanceof String)
+			return 1 + 4 + ((String)arg).length() * 3;
+		return 1 + 8;
+	}
+
+	/**
+	 * Writes the value, tagged with its type, at the buffer's position.
+	 */
+	static void writeValue(ByteBuffer segment, Object arg) {
+		if (arg instanceof Integer)        { segment.put(INT).putInt((Integer)arg); }
+		else if (arg instanceof Long)      { segment.put(LONG).putLong((Long)arg); }
+		else if (arg instanceof Double)    { segment.put(DOUBLE).putDouble((Double)arg); }
+		else if (arg instanceof Float)     { segment.put(FLOAT).putFloat((Float)arg); }
+		else if (arg instanceof Short)     { segment.put(SHORT).putShort((Short)arg); }
+		else if (arg instanceof Byte)      { segment.put(BYTE).put((Byte)arg); }
+		else if (arg instanceof Character) { segment.put(CHAR).putChar((Character)arg); }
+		else if (arg instanceof Boolean)   { segment.put(BOOLEAN).put((byte)((Boolean)arg ? 1 : 0)); }
+		else if (arg instanceof String) {
+			byte[] bytes = ((String)arg).getBytes(StandardCharsets.UTF_8);
+			segment.put(STRING).putInt(bytes.length).put(bytes);
+		}
+		else { segment.put(NULL); }
+	}
+
+	static Object readValue(ByteBuffer segment) {
+		switch (segment.get()) {
+		case INT:     return segment.getInt();
+		case LONG:    return segment.getLong();
+		case DOUBLE:  return segment.getDouble();
+		case FLOAT:   return segment.getFloat();
+		case SHORT:   return segment.getShort();
+		case BYTE:    return segment.get();
+		case CHAR:    return segment.getChar();
+		case BOOLEAN: return segment.get() != 0;
+		case STRING:
+			byte[] bytes = new byte[segment.getInt()];
+			segment.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		default:      return null;
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * LazyProxy defers building an expensive target until the first call made on
+ * it, so services that are wired up but never used on a node cost nothing:
+ *
+ * {@code
+ * ITables tables = LazyProxy.create(ITables.class, () -> new Tables(loadAll()));
+ * }
+ *
+ * The target is built once, under double-checked locking, by whichever thread
+ * calls first; concurrent callers wait for it rather than building their own.
+ * Once built, a call costs a single read of the target field before it is
+ * dispatched. If the supplier throws, the exception reaches the caller and the
+ * next call tries again.
+ *
+ * {@code equals} and {@code hashCode} are answered by the proxy's identity, so
+ * putting the proxy in a set or logging it never builds the target, and its
+ * hash code does not change once the target is built. {@code toString}
+ * delegates to a built target and otherwise says the target is not built yet.
+ *
+ * {@link #prewarm(Object)} builds the target in the background ahead of the
+ * first call, for targets that are likely to be needed.
+ */
+class LazyProxy implements InvocationHandler {
+
+	private volatile Object target;
+	private Supplier<?> supplier;
+
+	public LazyProxy(Supplier<?> supplier) {
+		this.supplier = supplier;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, Supplier<? extends T> supplier) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new LazyProxy(supplier));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Object t = target;
+		if (method.getDeclaringClass() == Object.class) {
+			switch (method.getName()) {
+			case "equals":   return proxy == args[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			default:
+				if (t == null)
+					return "Lazy[uninitialized]";
+			}
+		}
+		if (t == null)
+			t = initialize();
+		try {
+			return method.invoke(t, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Initialization
+
+	/**
+	 * Starts building the proxy's target on a background (virtual) thread.
+	 */
+	public static void prewarm(Object proxy) {
+		prewarm(proxy, VirtualThreads.executor());
+	}
+
+	/**
+	 * Starts building the proxy's target using the given executor. Failures are
+	 * left for the first real call to report.
+	 */
+	public static void prewarm(Object proxy, Executor executor) {
+		final LazyProxy handler = handlerOf(proxy);
+		if (handler.target != null)
+			return;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					handler.initialize();
+				} catch (RuntimeException e) {
+					// the first call will retry, and see the failure itself
+				}
+			}
+		});
+	}
+
+	public static boolean isInitialized(Object proxy) {
+		return handlerOf(proxy).target != null;
+	}
+
+	private Object initialize() {
+		synchronized (this) {
+			Object t = target;
+			if (t == null) {
+				t = supplier.get();
+				if (t == null)
+					throw new IllegalStateException("lazy proxy supplier returned null");
+				target = t;
+				supplier = null;
+			}
+			return t;
+		}
+	}
+
+	private static LazyProxy handlerOf(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof LazyProxy == false)
+			throw new IllegalArgumentException("not a lazy proxy: " + proxy);
+		return (LazyProxy)handler;
+	}
+
+}
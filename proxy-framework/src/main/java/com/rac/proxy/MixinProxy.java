@@ -0,0 +1,175 @@
+package com.rac.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MixinProxy builds one object that implements several interfaces, each backed
+ * by its own delegate:
+ *
+ * {@code
+ * Object mixin = MixinProxy.builder()
+ *     .with(IReader.class, reader)
+ *     .with(IWriter.class, writer)
+ *     .build();
+ * }
+ *
+ * The routing from every interface method to its delegate is worked out once,
+ * when the proxy is built, and each method gets a method handle already bound
+ * to its delegate. The table is an open-addressed array keyed by the
+ * {@code Method} instances the proxy class hands to {@code invoke}, so a call
+ * is normally one array probe followed by the bound handle.
+ *
+ * Conflicts are resolved the same way every time: when two interfaces declare
+ * the same method, the delegate registered first receives it. {@code equals}
+ * and {@code hashCode} are identity-based on the mixin itself, and
+ * {@code toString} lists the interfaces and their delegates, so no single
+ * delegate's notion of equality leaks into the mixin.
+ */
+class MixinProxy implements InvocationHandler {
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private static final MethodType ROUTE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+	private final Method[] keys;
+	private final MethodHandle[] routes;
+	private final int mask;
+	private final String description;
+
+	private MixinProxy(Map<Method,MethodHandle> table, String description) {
+		int capacity = Integer.highestOneBit(Math.max(4, table.size() * 4 - 1)) << 1;
+		this.keys = new Method[capacity];
+		this.routes = new MethodHandle[capacity];
+		this.mask = capacity - 1;
+		this.description = description;
+
+		for (Map.Entry<Method,MethodHandle> entry : table.entrySet()) {
+			int i = indexOf(entry.getKey());
+			while (keys[i] != null)
+				i = (i + 1) & mask;
+			keys[i] = entry.getKey();
+			routes[i] = entry.getValue();
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Object[] arguments = args == null ? NO_ARGS : args;
+		for (int i = indexOf(method); keys[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == method || keys[i].equals(method))
+				return routes[i].invokeExact(proxy, arguments);
+		}
+		throw new UnsupportedOperationException("no delegate for " + method);
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+
+	private int indexOf(Method method) {
+		int h = method.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	// Object methods, resolved on the mixin rather than on any delegate
+
+	static Object identityEquals(Object proxy, Object[] args) {
+		return proxy == args[0];
+	}
+
+	static Object identityHashCode(Object proxy, Object[] args) {
+		return System.identityHashCode(proxy);
+	}
+
+	static Object describe(Object proxy, Object[] args) {
+		return Proxy.getInvocationHandler(proxy).toString();
+	}
+
+	/**
+	 * Builder collects (interface, delegate) pairs in order of precedence.
+	 */
+	public static class Builder {
+
+		private final List<Class<?>> interfaces = new ArrayList<Class<?>>();
+		private final List<Object> delegates = new ArrayList<Object>();
+
+		public <T> Builder with(Class<T> interfaceClass, T delegate) {
+			if (interfaceClass.isInterface() == false)
+				throw new IllegalArgumentException(interfaceClass.getName() + " is not an interface");
+			if (interfaces.contains(interfaceClass))
+				throw new IllegalArgumentException(interfaceClass.getName() + " is already mixed in");
+			interfaces.add(interfaceClass);
+			delegates.add(delegate);
+			return this;
+		}
+
+		public <T> T build(Class<T> as) {
+			return as.cast(build());
+		}
+
+		public Object build() {
+			if (interfaces.isEmpty())
+				throw new IllegalStateException("a mixin needs at least one interface");
+
+			Map<Method,MethodHandle> table = new LinkedHashMap<Method,MethodHandle>();
+			Map<String,MethodHandle> bySignature = new LinkedHashMap<String,MethodHandle>();
+			StringBuilder description = new StringBuilder("Mixin[");
+
+			for (int i = 0; i < interfaces.size(); i++) {
+				Class<?> interfaceClass = interfaces.get(i);
+				Object delegate = delegates.get(i);
+				description.append(i == 0 ? "" : ", ").append(interfaceClass.getSimpleName()).append("=").append(delegate);
+
+				for (Method method : interfaceClass.getMethods()) {
+					String signature = method.getName() + MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+					MethodHandle route = bySignature.get(signature);
+					if (route == null)
+						bySignature.put(signature, route = bind(method, delegate));
+					table.put(method, route);
+				}
+			}
+			description.append("]");
+
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				table.put(Object.class.getMethod("equals", Object.class), lookup.findStatic(MixinProxy.class, "identityEquals", ROUTE));
+				table.put(Object.class.getMethod("hashCode"), lookup.findStatic(MixinProxy.class, "identityHashCode", ROUTE));
+				table.put(Object.class.getMethod("toString"), lookup.findStatic(MixinProxy.class, "describe", ROUTE));
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+
+			return Proxy.newProxyInstance(
+				interfaces.get(0).getClassLoader(),
+				interfaces.toArray(new Class<?>[interfaces.size()]),
+				new MixinProxy(table, description.toString()));
+		}
+
+		/**
+		 * @return a handle of type {@code (Object proxy,Object[] args)Object} that
+		 * calls the method on the delegate
+		 */
+		private static MethodHandle bind(Method method, Object delegate) {
+			MethodHandle handle = PropertySlots.unreflect(method)
+				.bindTo(delegate)
+				.asSpreader(Object[].class, method.getParameterTypes().length);
+			handle = handle.asType(MethodType.methodType(Object.class, Object[].class));
+			return MethodHandles.dropArguments(handle, 0, Object.class);
+		}
+	}
+
+}
@@ -0,0 +1,261 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * PoolingProxy shares a set of targets that are not thread-safe between any
+ * number of threads. Each call borrows a target from the pool, invokes it, and
+ * hands it back, so no two threads ever use the same target at once:
+ *
+ * {@code
+ * IParser parser = PoolingProxy.create(IParser.class, Parser::new, 2, 64);
+ * }
+ *
+ * The pool is striped by core: idle targets sit in one small array per stripe,
+ * a thread looks in its own stripe first and steals from the others only when
+ * its own is empty, and both borrowing and returning are a single
+ * compare-and-set on an array slot. New targets are created on demand up to
+ * {@code max}; beyond that, callers spin briefly and then park until a target
+ * comes back. {@code min} targets are created up front.
+ *
+ * An optional validator is consulted on every borrow (targets that fail it
+ * are dropped and replaced), and an optional reset hook runs on every return.
+ * A borrow that sees more than {@code max} targets in a row fail validation
+ * gives up with an {@code IllegalStateException} rather than replace them
+ * forever.
+ */
+class PoolingProxy<T> implements InvocationHandler {
+
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final Supplier<? extends T> factory;
+	private final Predicate<? super T> validator;
+	private final Consumer<? super T> reset;
+	private final int max;
+	private final int mask;
+	private final AtomicReferenceArray<T>[] stripes;
+	private final AtomicInteger live = new AtomicInteger();
+	private final Stats stats = new Stats(live);
+
+	public PoolingProxy(Supplier<? extends T> factory, Predicate<? super T> validator, Consumer<? super T> reset, int min, int max) {
+		if (min < 0 || max < 1 || min > max)
+			throw new IllegalArgumentException("pool sizes must satisfy 0 <= min <= max, 1 <= max");
+		this.factory = factory;
+		this.validator = validator;
+		this.reset = reset;
+		this.max = max;
+
+		int count = Math.min(Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)), Integer.highestOneBit(max));
+		int width = (max + count - 1) / count;
+		this.mask = count - 1;
+		this.stripes = newStripes(count, width);
+
+		for (int i = 0; i < min; i++) {
+			live.incrementAndGet();
+			stats.created.incrementAndGet();
+			giveBack(factory.get(), i & mask);
+		}
+	}
+
+	private static <T> AtomicReferenceArray<T>[] newStripes(int count, int width) {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		AtomicReferenceArray<T>[] stripes = new AtomicReferenceArray[count];
+		for (int i = 0; i < count; i++)
+			stripes[i] = new AtomicReferenceArray<T>(width);
+		return stripes;
+	}
+
+	// Factories
+
+	public static <T> T create(Class<T> interfaceClass, Supplier<? extends T> factory, int min, int max) {
+		return create(interfaceClass, factory, null, null, min, max);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, Supplier<? extends T> factory,
+			Predicate<? super T> validator, Consumer<? super T> reset, int min, int max) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new PoolingProxy<T>(factory, validator, reset, min, max));
+	}
+
+	public static Stats stats(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof PoolingProxy == false)
+			throw new IllegalArgumentException("not a pooling proxy: " + proxy);
+		return ((PoolingProxy<?>)handler).stats;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		int home = home();
+		T target = borrow(home);
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			// a target that threw goes back too, through the validator and reset
+			release(target, home);
+		}
+	}
+
+	// Borrowing and returning
+
+	private T borrow(int home) {
+		long started = 0;
+		int attempts = 0;
+		int rejected = 0;
+		for (;;) {
+			T target = takeIdle(home);
+			if (target == null)
+				target = createIfAllowed();
+
+			if (target != null) {
+				if (validator != null && validator.test(target) == false) {
+					discard();
+					if (++rejected > max)
+						throw new IllegalStateException(rejected + " targets in a row failed validation");
+					continue;
+				}
+				stats.borrowed(started == 0 ? 0 : System.nanoTime() - started);
+				return target;
+			}
+
+			if (started == 0)
+				started = System.nanoTime();
+			backoff(++attempts);
+		}
+	}
+
+	private void release(T target, int home) {
+		if (reset != null) {
+			try {
+				reset.accept(target);
+			} catch (RuntimeException e) {
+				discard();
+				return;
+			}
+		}
+		giveBack(target, home);
+	}
+
+	private T takeIdle(int home) {
+		for (int i = 0; i < stripes.length; i++) {
+			AtomicReferenceArray<T> stripe = stripes[(home + i) & mask];
+			for (int slot = 0; slot < stripe.length(); slot++) {
+				T target = stripe.get(slot);
+				if (target != null && stripe.compareAndSet(slot, target, null))
+					return target;
+			}
+		}
+		return null;
+	}
+
+	private void giveBack(T target, int home) {
+		// there are at least max slots across the stripes, so one is always free
+		for (;;) {
+			for (int i = 0; i < stripes.length; i++) {
+				AtomicReferenceArray<T> stripe = stripes[(home + i) & mask];
+				for (int slot = 0; slot < stripe.length(); slot++) {
+					if (stripe.get(slot) == null && stripe.compareAndSet(slot, null, target))
+						return;
+				}
+			}
+		}
+	}
+
+	private T createIfAllowed() {
+		for (;;) {
+			int current = live.get();
+			if (current >= max)
+				return null;
+			if (live.compareAndSet(current, current + 1))
+				break;
+		}
+		try {
+			stats.created.incrementAndGet();
+			return factory.get();
+		} catch (RuntimeException e) {
+			live.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private void discard() {
+		live.decrementAndGet();
+		stats.discarded.incrementAndGet();
+	}
+
+	private int home() {
+		long id = Thread.currentThread().getId();
+		return (int)((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+
+	private static void backoff(int attempts) {
+		if (attempts < 16)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(attempts - 16, 10)));
+	}
+
+	/**
+	 * Stats counts borrows and how long callers waited for a target when the
+	 * pool was exhausted.
+	 */
+	public static class Stats {
+
+		private final AtomicInteger live;
+		private final AtomicLong borrows = new AtomicLong();
+		private final AtomicLong waits = new AtomicLong();
+		private final AtomicLong waitNanos = new AtomicLong();
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+		private final AtomicLong created = new AtomicLong();
+		private final AtomicLong discarded = new AtomicLong();
+
+		Stats(AtomicInteger live) {
+			this.live = live;
+		}
+
+		void borrowed(long waited) {
+			borrows.incrementAndGet();
+			if (waited > 0) {
+				waits.incrementAndGet();
+				waitNanos.addAndGet(waited);
+				maxWaitNanos.accumulateAndGet(waited, Math::max);
+			}
+		}
+
+		public long getBorrows()       { return borrows.get(); }
+		public long getWaits()         { return waits.get(); }
+		public long getMaxWaitNanos()  { return maxWaitNanos.get(); }
+		public long getCreated()       { return created.get(); }
+		public long getDiscarded()     { return discarded.get(); }
+		public int getSize()           { return live.get(); }
+
+		public double getAverageWaitNanos() {
+			long count = waits.get();
+			return count == 0 ? 0 : (double)waitNanos.get() / count;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("size=%d borrows=%d waits=%d avgWait=%.0fns maxWait=%dns created=%d discarded=%d",
+				getSize(), getBorrows(), getWaits(), getAverageWaitNanos(), getMaxWaitNanos(), getCreated(), getDiscarded());
+		}
+	}
+
+}
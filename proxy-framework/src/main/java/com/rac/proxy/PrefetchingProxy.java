@@ -0,0 +1,298 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * PrefetchingProxy learns which methods tend to follow which, and when it is
+ * confident about the next call, makes it early, in the background, so the
+ * result is ready (or on its way) when the caller asks for it:
+ *
+ * {@code
+ * IProfile profile = PrefetchingProxy.create(IProfile.class, backend, 0.8, 4, 200);
+ * }
+ *
+ * For every method the proxy keeps a row of small counters, one per possible
+ * successor, updated on each call from the method the same thread called last.
+ * Rows are halved when they grow large, so the counts follow changes in the
+ * access pattern. Once a method has been seen often enough, every successor
+ * that followed it in at least {@code threshold} of the cases is prefetched,
+ * as long as fewer than {@code maxInFlight} prefetches are running.
+ *
+ * Only reads without parameters are prefetched, as their call is fully known
+ * in advance and making it early has no effect of its own. Reads are getters
+ * and methods annotated with {@link StampedLockProxy.Read}. A prefetched
+ * result is used at most once, and only within {@code validityMillis} of the
+ * prefetch starting; a caller that arrives while the prefetch is still running
+ * waits for it rather than calling again. Prefetched results that are never
+ * used count as wasted.
+ *
+ * Any other method is taken to change the target, so calling one through the
+ * proxy discards every prefetched result, including prefetches that were
+ * still running while it ran. Changes made to the target other than through
+ * the proxy are not seen, and may be read stale for up to
+ * {@code validityMillis}.
+ */
+class PrefetchingProxy implements InvocationHandler {
+
+	// calls from a method before its successors are trusted
+	private static final int MIN_SAMPLES = 8;
+
+	// a row is halved when it has counted this many calls
+	private static final int DECAY_AT = 1024;
+
+	private final Object target;
+	private final Method[] methods;
+	private final boolean[] reads;
+	private final boolean[] prefetchable;
+	private final double threshold;
+	private final int maxInFlight;
+	private final long validityNanos;
+	private final Executor executor;
+	private final Stats stats = new Stats();
+
+	// counts[from * n + to] and totals[from], each row guarded by rowLocks[from]
+	private final int[] counts;
+	private final int[] totals;
+	private final Object[] rowLocks;
+
+	private final ThreadLocal<int[]> last = ThreadLocal.withInitial(() -> new int[] { -1 });
+	private final AtomicReferenceArray<Prefetch> prefetched;
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	// bumped before and after every write, so a prefetch overlapping one is never used
+	private final AtomicLong writes = new AtomicLong();
+
+	public PrefetchingProxy(Class<?> interfaceClass, Object target, double threshold, int maxInFlight,
+			long validityMillis, Executor executor) {
+		if (threshold <= 0 || threshold > 1)
+			throw new IllegalArgumentException("threshold must be in (0, 1]");
+		this.target = target;
+		this.methods = InvocationLog.methodsOf(interfaceClass);
+		this.reads = new boolean[methods.length];
+		this.prefetchable = new boolean[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			reads[i] = StampedLockProxy.isRead(methods[i]);
+			prefetchable[i] = reads[i] && methods[i].getParameterCount() == 0;
+		}
+		this.threshold = threshold;
+		this.maxInFlight = maxInFlight;
+		this.validityNanos = TimeUnit.MILLISECONDS.toNanos(validityMillis);
+		this.executor = executor;
+		this.counts = new int[methods.length * methods.length];
+		this.totals = new int[methods.length];
+		this.rowLocks = new Object[methods.length];
+		for (int i = 0; i < methods.length; i++)
+			rowLocks[i] = new Object();
+		this.prefetched = new AtomicReferenceArray<Prefetch>(methods.length);
+	}
+
+	// Factories
+
+	public static <T> T create(Class<T> interfaceClass, T target, double threshold, int maxInFlight, long validityMillis) {
+		return create(interfaceClass, target, threshold, maxInFlight, validityMillis, VirtualThreads.executor());
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target, double threshold, int maxInFlight,
+			long validityMillis, Executor executor) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new PrefetchingProxy(interfaceClass, target, threshold, maxInFlight, validityMillis, executor));
+	}
+
+	public static Stats stats(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof PrefetchingProxy == false)
+			throw new IllegalArgumentException("not a prefetching proxy: " + proxy);
+		return ((PrefetchingProxy)handler).stats;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return method.invoke(target, args);
+
+		int called = indexOf(method);
+		stats.calls.incrementAndGet();
+
+		int[] previous = last.get();
+		if (previous[0] >= 0)
+			learn(previous[0], called);
+		previous[0] = called;
+
+		if (reads[called] == false)
+			return write(called, method, args);
+
+		Prefetch ready = prefetchable[called] ? prefetched.getAndSet(called, null) : null;
+		prefetchSuccessors(called);
+
+		if (ready != null) {
+			if (ready.writes == writes.get() && System.nanoTime() - ready.started <= validityNanos) {
+				stats.hits.incrementAndGet();
+				try {
+					return ready.result.get();
+				} catch (ExecutionException e) {
+					throw e.getCause();
+				}
+			}
+			stats.wasted.incrementAndGet();
+		}
+
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Implementation support
+
+	private int indexOf(Method method) {
+		for (int i = 0; i < methods.length; i++) {
+			if (methods[i].equals(method))
+				return i;
+		}
+		throw new UnsupportedOperationException(method.toString());
+	}
+
+	private void learn(int from, int to) {
+		int n = methods.length;
+		synchronized (rowLocks[from]) {
+			counts[from * n + to]++;
+			if (++totals[from] >= DECAY_AT) {
+				totals[from] = 0;
+				for (int i = from * n; i < (from + 1) * n; i++)
+					totals[from] += counts[i] >>>= 1;
+			}
+		}
+	}
+
+	/**
+	 * Runs a method that may change the target, discarding every prefetched
+	 * result first, and prefetches its successors only once it is done.
+	 */
+	private Object write(int called, Method method, Object[] args) throws Throwable {
+		writes.incrementAndGet();
+		for (int i = 0; i < methods.length; i++) {
+			if (prefetchable[i] && prefetched.getAndSet(i, null) != null)
+				stats.wasted.incrementAndGet();
+		}
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			writes.incrementAndGet();
+			prefetchSuccessors(called);
+		}
+	}
+
+	private void prefetchSuccessors(int from) {
+		int n = methods.length;
+		for (int to = 0; to < n; to++) {
+			if (prefetchable[to] == false)
+				continue;
+			boolean confident;
+			synchronized (rowLocks[from]) {
+				confident = totals[from] >= MIN_SAMPLES && counts[from * n + to] >= threshold * totals[from];
+			}
+			if (confident)
+				prefetch(to);
+		}
+	}
+
+	private void prefetch(final int index) {
+		Prefetch current = prefetched.get(index);
+		if (current != null && current.writes == writes.get() && System.nanoTime() - current.started <= validityNanos)
+			return;
+
+		for (;;) {
+			int running = inFlight.get();
+			if (running >= maxInFlight) {
+				stats.overBudget.incrementAndGet();
+				return;
+			}
+			if (inFlight.compareAndSet(running, running + 1))
+				break;
+		}
+
+		final Prefetch prefetch = new Prefetch(writes.get());
+		if (prefetched.compareAndSet(index, current, prefetch) == false) {
+			inFlight.decrementAndGet();
+			return;
+		}
+		if (current != null)
+			stats.wasted.incrementAndGet();
+		stats.prefetches.incrementAndGet();
+
+		executor.execute(() -> {
+			try {
+				prefetch.result.complete(methods[index].invoke(target));
+			} catch (InvocationTargetException e) {
+				prefetch.result.completeExceptionally(e.getCause());
+			} catch (Throwable t) {
+				prefetch.result.completeExceptionally(t);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Prefetch is one early call, possibly still running.
+	 */
+	private static final class Prefetch {
+		final long started = System.nanoTime();
+		final long writes;
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+		Prefetch(long writes) {
+			this.writes = writes;
+		}
+	}
+
+	/**
+	 * Stats counts prefetches made, used and wasted, and prefetches skipped
+	 * because the budget was spent.
+	 */
+	public static class Stats {
+
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong prefetches = new AtomicLong();
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong wasted = new AtomicLong();
+		private final AtomicLong overBudget = new AtomicLong();
+
+		public long getCalls()          { return calls.get(); }
+		public long getPrefetches()     { return prefetches.get(); }
+		public long getHits()           { return hits.get(); }
+		public long getWasted()         { return wasted.get(); }
+		public long getOverBudget()     { return overBudget.get(); }
+
+		/**
+		 * @return the share of prefetches that were used
+		 */
+		public double getHitRate() {
+			long prefetches = getPrefetches();
+			return prefetches == 0 ? 0 : (double)getHits() / prefetches;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("calls=%d prefetches=%d hits=%d (%.0f%%) wasted=%d overBudget=%d",
+				getCalls(), getPrefetches(), getHits(), getHitRate() * 100, getWasted(), getOverBudget());
+		}
+	}
+
+}
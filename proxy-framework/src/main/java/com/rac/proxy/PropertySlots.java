@@ -0,0 +1,192 @@
+package com.rac.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * PropertySlots assigns every bean-style property of an interface a small,
+ * dense slot number, so proxies can keep per-property state in plain arrays
+ * rather than in maps keyed by method name.
+ *
+ * A property is any name exposed through a getter ({@code getX()} or
+ * {@code isX()}) and/or a setter ({@code setX(value)}). Slots are ordered by
+ * property name, so the numbering is stable for a given interface.
+ *
+ * Plans are computed once per interface and cached, so callers should simply
+ * use {@code PropertySlots.of(interfaceClass)} wherever they need one.
+ */
+class PropertySlots {
+
+	private static final ClassValue<PropertySlots> PLANS = new ClassValue<PropertySlots>() {
+		@Override
+		protected PropertySlots computeValue(Class<?> type) {
+			return new PropertySlots(type);
+		}
+	};
+
+	public static PropertySlots of(Class<?> interfaceClass) {
+		return PLANS.get(interfaceClass);
+	}
+
+	private final Class<?> interfaceClass;
+	private final String[] names;
+	private final Class<?>[] types;
+	private final Method[] getters;
+	private final Method[] setters;
+	private final MethodHandle[] getterHandles;
+	private final MethodHandle[] setterHandles;
+	private final Map<Method,Integer> getterSlots = new HashMap<Method,Integer>();
+	private final Map<Method,Integer> setterSlots = new HashMap<Method,Integer>();
+	private final Map<String,Integer> nameSlots = new HashMap<String,Integer>();
+
+	private PropertySlots(Class<?> interfaceClass) {
+		this.interfaceClass = interfaceClass;
+
+		TreeMap<String,Method[]> properties = new TreeMap<String,Method[]>();
+		for (Method method : interfaceClass.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers()))
+				continue;
+
+			String property = propertyOf(method);
+			if (property == null)
+				continue;
+
+			Method[] accessors = properties.get(property);
+			if (accessors == null)
+				properties.put(property, accessors = new Method[2]);
+			accessors[isSetter(method) ? 1 : 0] = method;
+		}
+
+		int size = properties.size();
+		this.names = new String[size];
+		this.types = new Class<?>[size];
+		this.getters = new Method[size];
+		this.setters = new Method[size];
+		this.getterHandles = new MethodHandle[size];
+		this.setterHandles = new MethodHandle[size];
+
+		int slot = 0;
+		for (Map.Entry<String,Method[]> property : properties.entrySet()) {
+			Method getter = property.getValue()[0];
+			Method setter = property.getValue()[1];
+
+			names[slot] = property.getKey();
+			types[slot] = getter != null ? getter.getReturnType() : setter.getParameterTypes()[0];
+			getters[slot] = getter;
+			setters[slot] = setter;
+
+			nameSlots.put(names[slot], slot);
+			if (getter != null) getterSlots.put(getter, slot);
+			if (setter != null) setterSlots.put(setter, slot);
+			slot++;
+		}
+	}
+
+	// Accessors
+
+	public Class<?> interfaceClass()  { return interfaceClass; }
+	public int size()                 { return names.length; }
+	public String name(int slot)      { return names[slot]; }
+	public Class<?> type(int slot)    { return types[slot]; }
+	public Method getter(int slot)    { return getters[slot]; }
+	public Method setter(int slot)    { return setters[slot]; }
+
+	/**
+	 * @return the slot of the named property, or -1 if there is no such property
+	 */
+	public int slotOf(String property) {
+		Integer slot = nameSlots.get(property);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @return the slot read by the given getter, or -1 if the method is not a getter
+	 */
+	public int getterSlot(Method method) {
+		Integer slot = getterSlots.get(method);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @return the slot written by the given setter, or -1 if the method is not a setter
+	 */
+	public int setterSlot(Method method) {
+		Integer slot = setterSlots.get(method);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @return a handle of type {@code (Object)Object} that reads the slot from
+	 * any implementation of the interface, or null if the slot has no getter
+	 */
+	public MethodHandle getterHandle(int slot) {
+		MethodHandle handle = getterHandles[slot];
+		if (handle == null && getters[slot] != null)
+			getterHandles[slot] = handle = unreflect(getters[slot])
+				.asType(MethodType.methodType(Object.class, Object.class));
+		return handle;
+	}
+
+	/**
+	 * @return a handle of type {@code (Object,Object)void} that writes the slot on
+	 * any implementation of the interface, or null if the slot has no setter
+	 */
+	public MethodHandle setterHandle(int slot) {
+		MethodHandle handle = setterHandles[slot];
+		if (handle == null && setters[slot] != null)
+			setterHandles[slot] = handle = unreflect(setters[slot])
+				.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return handle;
+	}
+
+	// Naming conventions
+
+	public static boolean isGetter(Method method) {
+		String name = method.getName();
+		if (method.getParameterTypes().length != 0 || method.getReturnType() == void.class)
+			return false;
+		if (name.startsWith("get") && name.length() > 3)
+			return true;
+		return name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class;
+	}
+
+	public static boolean isSetter(Method method) {
+		String name = method.getName();
+		return name.startsWith("set") && name.length() > 3 && method.getParameterTypes().length == 1;
+	}
+
+	/**
+	 * @return the property name for an accessor ({@code getText} and {@code setText}
+	 * both yield {@code text}), or null if the method is not an accessor
+	 */
+	public static String propertyOf(Method method) {
+		String name = method.getName();
+		if (isSetter(method) || (isGetter(method) && name.startsWith("get")))
+			return decapitalize(name.substring(3));
+		if (isGetter(method))
+			return decapitalize(name.substring(2));
+		return null;
+	}
+
+	// Implementation support
+
+	private static String decapitalize(String name) {
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+	static MethodHandle unreflect(Method method) {
+		try {
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("cannot access " + method, e);
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.rac.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ProxyFactory makes proxies of one interface in one class loader without
+ * going back through {@code Proxy.newProxyInstance} each time:
+ *
+ * {@code
+ * ProxyFactory<ITargetClass> factory = ProxyFactory.of(ITargetClass.class);
+ * ITargetClass proxy = factory.newInstance(new AbstractProxy(target));
+ * }
+ *
+ * The proxy class and a method handle on its constructor are resolved once,
+ * when the factory is built; after that a proxy costs only its own allocation.
+ * {@code newProxyInstance} instead re-checks the interfaces and the loader,
+ * and looks the class up in its cache, on every call.
+ *
+ * Factories are cached so {@link #of} is cheap too, but callers that create
+ * many proxies should keep the factory in a field. The cache never lets a
+ * shared interface keep another class loader alive, which matters when the
+ * interface sits in a parent loader shared by webapps that are redeployed:
+ *
+ * <ul>
+ * <li>the factory for the interface's own loader is cached on the interface;</li>
+ * <li>{@link #forTarget} caches the factory for a target class's loader on the
+ * target class, so it goes when that loader goes;</li>
+ * <li>{@link #of(Class, ClassLoader)} with any other loader builds a new factory
+ * on every call, for the caller to keep.</li>
+ * </ul>
+ */
+final class ProxyFactory<T> {
+
+	private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class, InvocationHandler.class);
+
+	private static final ClassValue<ProxyFactory<?>> OWN = new ClassValue<ProxyFactory<?>>() {
+		@Override
+		protected ProxyFactory<?> computeValue(Class<?> interfaceClass) {
+			return new ProxyFactory<Object>(interfaceClass, interfaceClass.getClassLoader());
+		}
+	};
+
+	// factories for each interface, held by the target class whose loader they use
+	private static final ClassValue<ConcurrentMap<Class<?>,ProxyFactory<?>>> BY_TARGET =
+		new ClassValue<ConcurrentMap<Class<?>,ProxyFactory<?>>>() {
+			@Override
+			protected ConcurrentMap<Class<?>,ProxyFactory<?>> computeValue(Class<?> targetClass) {
+				return new ConcurrentHashMap<Class<?>,ProxyFactory<?>>(2);
+			}
+		};
+
+	private static final InvocationHandler UNUSED = (proxy, method, args) -> {
+		throw new IllegalStateException("proxy made only to find its class");
+	};
+
+	private final Class<T> interfaceClass;
+	private final Class<?> proxyClass;
+	private final MethodHandle constructor;
+
+	@SuppressWarnings("unchecked")
+	private ProxyFactory(Class<?> interfaceClass, ClassLoader loader) {
+		this.interfaceClass = (Class<T>)interfaceClass;
+		this.proxyClass = Proxy.newProxyInstance(loader, new Class<?>[] { interfaceClass }, UNUSED).getClass();
+		try {
+			this.constructor = MethodHandles.lookup()
+				.unreflectConstructor(proxyClass.getConstructor(InvocationHandler.class))
+				.asType(CONSTRUCTOR);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot construct " + proxyClass.getName(), e);
+		}
+	}
+
+	// Factories
+
+	/**
+	 * @return the factory for the interface in its own class loader
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ProxyFactory<T> of(Class<T> interfaceClass) {
+		checkInterface(interfaceClass);
+		return (ProxyFactory<T>)OWN.get(interfaceClass);
+	}
+
+	/**
+	 * @return the factory for the interface in the given class loader, which must
+	 * be able to see the interface; only the interface's own loader is cached
+	 */
+	public static <T> ProxyFactory<T> of(Class<T> interfaceClass, ClassLoader loader) {
+		checkInterface(interfaceClass);
+		if (loader == interfaceClass.getClassLoader())
+			return of(interfaceClass);
+		return new ProxyFactory<T>(interfaceClass, loader);
+	}
+
+	/**
+	 * @return the factory for the interface in the target class's loader, cached
+	 * on the target class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ProxyFactory<T> forTarget(Class<T> interfaceClass, Class<?> targetClass) {
+		checkInterface(interfaceClass);
+		ClassLoader loader = targetClass.getClassLoader();
+		if (loader == interfaceClass.getClassLoader())
+			return of(interfaceClass);
+		ConcurrentMap<Class<?>,ProxyFactory<?>> factories = BY_TARGET.get(targetClass);
+		ProxyFactory<?> factory = factories.get(interfaceClass);
+		if (factory == null)
+			factory = factories.computeIfAbsent(interfaceClass, k -> new ProxyFactory<T>(interfaceClass, loader));
+		return (ProxyFactory<T>)factory;
+	}
+
+	private static void checkInterface(Class<?> interfaceClass) {
+		if (interfaceClass.isInterface() == false)
+			throw new IllegalArgumentException(interfaceClass.getName() + " is not an interface");
+	}
+
+	// Accessors
+
+	public Class<T> interfaceClass()    { return interfaceClass; }
+	public Class<?> proxyClass()        { return proxyClass; }
+
+	/**
+	 * @return a new proxy that sends every call to the handler
+	 */
+	public T newInstance(InvocationHandler handler) {
+		if (handler == null)
+			throw new NullPointerException("handler");
+		try {
+			return interfaceClass.cast(constructor.invokeExact(handler));
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.rac.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RecordingProxy captures the calls made on an interface into an
+ * {@link InvocationLog}, so real traffic can later be replayed against another
+ * implementation, or another build, with {@link #replay}:
+ *
+ * {@code
+ * try (InvocationLog log = new InvocationLog(new File("/tmp/capture"))) {
+ *     IService service = RecordingProxy.create(IService.class, real, log);
+ *     ...
+ * }
+ *
+ * RecordingProxy.Report report = RecordingProxy.replay(new File("/tmp/capture"), IService.class, candidate, false);
+ * }
+ *
+ * Each call is passed to the target and then appended to the log with its
+ * arguments and the hash of its result. A call that throws is logged with a
+ * result hash of the exception's class name. A failure to write the log never
+ * fails the call itself; it is counted instead, see {@link #dropped(Object)}.
+ */
+class RecordingProxy implements InvocationHandler {
+
+	private final Object target;
+	private final InvocationLog log;
+	private final Map<Method,Integer> ids = new HashMap<Method,Integer>();
+	private long dropped;
+
+	public RecordingProxy(Class<?> interfaceClass, Object target, InvocationLog log) {
+		this.target = target;
+		this.log = log;
+		Method[] methods = InvocationLog.methodsOf(interfaceClass);
+		for (int id = 0; id < methods.length; id++)
+			ids.put(methods[id], id);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target, InvocationLog log) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new RecordingProxy(interfaceClass, target, log));
+	}
+
+	/**
+	 * @return the number of calls that could not be written to the log
+	 */
+	public static long dropped(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof RecordingProxy == false)
+			throw new IllegalArgumentException("not a recording proxy: " + proxy);
+		synchronized (handler) {
+			return ((RecordingProxy)handler).dropped;
+		}
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		Integer id = ids.get(method);
+		try {
+			if (id == null)
+				return method.invoke(target, args);
+
+			Object result = method.invoke(target, args);
+			record(id, args, Objects.hashCode(result));
+			return result;
+		} catch (InvocationTargetException e) {
+			if (id != null)
+				record(id, args, e.getCause().getClass().getName().hashCode());
+			throw e.getCause();
+		}
+	}
+
+	private void record(int id, Object[] args, int resultHash) {
+		try {
+			log.append(id, args, resultHash);
+		} catch (IOException e) {
+			synchronized (this) { dropped++; }
+		}
+	}
+
+	// Replay
+
+	/**
+	 * Replays a recorded log against a target, one call at a time, either as fast
+	 * as possible or spaced as the calls were originally recorded.
+	 */
+	public static <T> Report replay(File directory, Class<T> interfaceClass, final T target, final boolean recordedSpeed) throws Exception {
+		final Method[] methods = InvocationLog.methodsOf(interfaceClass);
+		final Report report = new Report();
+		final long started = System.nanoTime();
+
+		InvocationLog.read(directory, new InvocationLog.Reader() {
+			long firstRecorded = -1;
+
+			@Override
+			public void record(int methodId, long nanos, Object[] args, int resultHash) throws Exception {
+				if (recordedSpeed) {
+					if (firstRecorded < 0)
+						firstRecorded = nanos;
+					long wait = (nanos - firstRecorded) - (System.nanoTime() - started);
+					if (wait > 0)
+						TimeUnit.NANOSECONDS.sleep(wait);
+				}
+
+				Method method = methods[methodId];
+				int hash;
+				long begin = System.nanoTime();
+				try {
+					hash = Objects.hashCode(method.invoke(target, args));
+				} catch (InvocationTargetException e) {
+					hash = e.getCause().getClass().getName().hashCode();
+				}
+				report.add(System.nanoTime() - begin, hash != resultHash);
+			}
+		});
+
+		report.elapsedNanos = System.nanoTime() - started;
+		return report;
+	}
+
+	/**
+	 * Report summarizes a replay: how many calls ran, how fast, and how many gave
+	 * a different result than when they were recorded.
+	 */
+	public static class Report {
+
+		private long[] latencies = new long[1024];
+		private int calls;
+		private int mismatches;
+		private long elapsedNanos;
+
+		void add(long latencyNanos, boolean mismatch) {
+			if (calls == latencies.length)
+				latencies = Arrays.copyOf(latencies, calls * 2);
+			latencies[calls++] = latencyNanos;
+			if (mismatch)
+				mismatches++;
+		}
+
+		public int getCalls()           { return calls; }
+		public int getMismatches()      { return mismatches; }
+		public long getElapsedNanos()   { return elapsedNanos; }
+
+		public double getCallsPerSecond() {
+			return elapsedNanos == 0 ? 0 : calls * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @param percentile between 0 and 100
+		 * @return the call latency at that percentile, in nanoseconds
+		 */
+		public long getLatencyNanos(double percentile) {
+			if (calls == 0)
+				return 0;
+			long[] sorted = Arrays.copyOf(latencies, calls);
+			Arrays.sort(sorted);
+			int index = (int)Math.ceil(percentile / 100.0 * calls) - 1;
+			return sorted[Math.max(0, Math.min(calls - 1, index))];
+		}
+
+		@Override
+		public String toString() {
+			return String.format("calls=%d mismatches=%d throughput=%.0f/s p50=%dns p99=%dns max=%dns",
+				calls, mismatches, getCallsPerSecond(), getLatencyNanos(50), getLatencyNanos(99), getLatencyNanos(100));
+		}
+	}
+
+}
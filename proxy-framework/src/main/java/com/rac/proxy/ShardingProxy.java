@@ -0,0 +1,212 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * ShardingProxy spreads the load on a target that is limited by a single lock
+ * across several instances of it, each owning the keys that hash to it:
+ *
+ * {@code
+ * ICache cache = ShardingProxy.builder(ICache.class, shards)
+ *     .key("get", 0)
+ *     .key("put", 0)
+ *     .reduce("size", (Integer a, Integer b) -> a + b)
+ *     .broadcast("clear")
+ *     .build();
+ * }
+ *
+ * A keyed method goes to {@code shards[hash(key) % shards.length]}, where the
+ * key is one of its arguments (or anything computed from them). Methods with
+ * no key are broadcast to every shard in turn; if they return something, the
+ * results are combined with the method's reducer.
+ *
+ * Every routing mistake is caught when the proxy is built rather than when a
+ * call goes astray: {@code build()} rejects names the interface does not have,
+ * argument indices past the end of any overload, {@code broadcast} on a method
+ * that returns a value, and any method that takes arguments but has no route.
+ * A void method without arguments that is not configured is broadcast.
+ *
+ * Equal keys always reach the same shard, so per-key behaviour is unchanged
+ * for callers. {@code equals} and {@code hashCode} are identity-based on the
+ * proxy.
+ */
+class ShardingProxy implements InvocationHandler {
+
+	private final Object[] shards;
+	private final Map<Method,Route> routes;
+
+	private ShardingProxy(Object[] shards, Map<Method,Route> routes) {
+		this.shards = shards;
+		this.routes = routes;
+	}
+
+	public static <T> Builder<T> builder(Class<T> interfaceClass, List<? extends T> shards) {
+		return new Builder<T>(interfaceClass, shards);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Route route = routes.get(method);
+		if (route == null) {
+			switch (method.getName()) {
+			case "equals":   return proxy == args[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			case "toString": return "Sharded[" + shards.length + " shards]";
+			}
+			throw new UnsupportedOperationException(method.toString());
+		}
+
+		try {
+			if (route.key != null)
+				return method.invoke(shards[shardOf(route.key.apply(args))], args);
+
+			Object result = method.invoke(shards[0], args);
+			for (int shard = 1; shard < shards.length; shard++) {
+				Object next = method.invoke(shards[shard], args);
+				if (route.reducer != null)
+					result = route.reducer.apply(result, next);
+			}
+			return result;
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * @return the shard owning the key
+	 */
+	int shardOf(Object key) {
+		int h = key == null ? 0 : key.hashCode();
+		return Math.floorMod(h ^ (h >>> 16), shards.length);
+	}
+
+	/**
+	 * Route is how one method is dispatched: by key, or broadcast and reduced.
+	 */
+	private static final class Route {
+
+		final Function<Object[],Object> key;
+		final BinaryOperator<Object> reducer;
+
+		Route(Function<Object[],Object> key, BinaryOperator<Object> reducer) {
+			this.key = key;
+			this.reducer = reducer;
+		}
+	}
+
+	/**
+	 * Builder collects the routing of each method by name; the same routing
+	 * applies to every overload of that name.
+	 */
+	public static class Builder<T> {
+
+		private final Class<T> interfaceClass;
+		private final List<T> shards;
+		private final Map<String,Function<Object[],Object>> keys = new HashMap<String,Function<Object[],Object>>();
+		private final Map<String,Integer> keyArguments = new HashMap<String,Integer>();
+		private final Map<String,BinaryOperator<Object>> reducers = new HashMap<String,BinaryOperator<Object>>();
+		private final Set<String> broadcasts = new HashSet<String>();
+
+		private Builder(Class<T> interfaceClass, List<? extends T> shards) {
+			if (shards.isEmpty())
+				throw new IllegalArgumentException("at least one shard is needed");
+			this.interfaceClass = interfaceClass;
+			this.shards = new ArrayList<T>(shards);
+		}
+
+		/**
+		 * Routes the method by one of its arguments.
+		 */
+		public Builder<T> key(String method, final int argument) {
+			if (argument < 0)
+				throw new IllegalArgumentException("argument index " + argument + " of " + method + " is negative");
+			key(method, args -> args[argument]);
+			keyArguments.put(method, argument);
+			return this;
+		}
+
+		/**
+		 * Routes the method by a key computed from its arguments.
+		 */
+		public Builder<T> key(String method, Function<Object[],Object> key) {
+			checkUnrouted(method);
+			keys.put(method, key);
+			return this;
+		}
+
+		/**
+		 * Broadcasts the method to every shard and folds the results, in shard
+		 * order, with the reducer.
+		 */
+		@SuppressWarnings("unchecked")
+		public <R> Builder<T> reduce(String method, BinaryOperator<R> reducer) {
+			checkUnrouted(method);
+			reducers.put(method, (BinaryOperator<Object>)reducer);
+			return this;
+		}
+
+		/**
+		 * Broadcasts the method to every shard, ignoring any results.
+		 */
+		public Builder<T> broadcast(String method) {
+			reduce(method, (a, b) -> null);
+			broadcasts.add(method);
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if any method is routed wrongly, or not
+		 * at all when it needs to be
+		 */
+		public T build() {
+			Set<String> names = new HashSet<String>();
+			Map<Method,Route> routes = new HashMap<Method,Route>();
+			for (Method method : interfaceClass.getMethods()) {
+				String name = method.getName();
+				names.add(name);
+				Function<Object[],Object> key = keys.get(name);
+				BinaryOperator<Object> reducer = reducers.get(name);
+
+				Integer argument = keyArguments.get(name);
+				if (argument != null && argument >= method.getParameterCount())
+					throw new IllegalArgumentException(method + " has no argument " + argument + " to key on");
+				if (broadcasts.contains(name) && method.getReturnType() != void.class)
+					throw new IllegalArgumentException(method + " returns a value, so it needs a reducer rather than a broadcast");
+				if (key == null && reducer == null && method.getParameterCount() > 0)
+					throw new IllegalArgumentException(method + " takes arguments but has no route");
+				if (key == null && reducer == null && method.getReturnType() != void.class)
+					throw new IllegalArgumentException(method + " is broadcast but has no reducer");
+				routes.put(method, new Route(key, reducer));
+			}
+
+			for (String name : keys.keySet())
+				if (names.contains(name) == false)
+					throw new IllegalArgumentException(interfaceClass.getName() + " has no method " + name);
+			for (String name : reducers.keySet())
+				if (names.contains(name) == false)
+					throw new IllegalArgumentException(interfaceClass.getName() + " has no method " + name);
+
+			return interfaceClass.cast(Proxy.newProxyInstance(
+				interfaceClass.getClassLoader(),
+				new Class<?>[] { interfaceClass },
+				new ShardingProxy(shards.toArray(), routes)));
+		}
+
+		private void checkUnrouted(String method) {
+			if (keys.containsKey(method) || reducers.containsKey(method))
+				throw new IllegalArgumentException(method + " is already routed");
+		}
+	}
+
+}
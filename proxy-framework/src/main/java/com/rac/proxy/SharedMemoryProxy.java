@@ -0,0 +1,605 @@
+package com.rac.proxy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SharedMemoryProxy calls an interface on a target in another JVM on the same
+ * host through a memory-mapped file, without sockets:
+ *
+ * {@code
+ * // sidecar
+ * SharedMemoryProxy.Server server = SharedMemoryProxy.serve(IQuotes.class, quotes, file);
+ *
+ * // caller
+ * IQuotes quotes = SharedMemoryProxy.connect(IQuotes.class, file);
+ * }
+ *
+ * The file holds two single-producer, single-consumer rings of fixed-size
+ * slots, one for requests and one for replies. Each ring has a head and a tail
+ * counter on cache lines of their own, written with release and read with
+ * acquire semantics through a {@code VarHandle} view of the mapping, so a
+ * slot's contents are always visible before the counter that publishes it.
+ * Calls and replies are encoded as in {@link InvocationLog}: a method id, then
+ * type-tagged arguments. Every parameter and return type must therefore be a
+ * primitive, a wrapper or a String; this is checked when either side starts.
+ *
+ * Both sides wait by spinning briefly, then yielding, then parking for a few
+ * microseconds at a time, so a call costs microseconds while the other side is
+ * busy and little CPU while it is idle.
+ *
+ * One client may be connected to a file at a time. A client holds a lock on
+ * the file until its process exits, and a second {@code connect}, from this
+ * process or another, fails with an {@code IOException} while it is held. Calls from several threads of that
+ * client are made one after another. A call that gets no reply within the
+ * client's timeout fails with an {@code IllegalStateException}, and a late
+ * reply to it is discarded. An exception thrown by the target is rethrown in
+ * the client as the same class when the interface's class loader can load it
+ * and it has a {@code (String)} constructor, and as an
+ * {@code IllegalStateException} otherwise.
+ *
+ * Each connection takes a new epoch from the file's header, and its call ids
+ * carry the epoch in their upper half, so a reply left unread by a client
+ * that died can never be taken for the answer to a later client's call.
+ *
+ * The server answers every request, even one it cannot decode or whose reply
+ * does not fit in a slot, with a failure if need be, and keeps serving. While
+ * the reply ring is full it checks now and then whether any client still holds
+ * the file's lock, and drops the reply if none does.
+ */
+class SharedMemoryProxy implements InvocationHandler {
+
+	public static final int DEFAULT_SLOT_SIZE = 4096;
+	public static final int DEFAULT_SLOTS = 64;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+	private static final int MAGIC = 0x52414350;	// "RACP"
+	private static final int VERSION = 2;
+
+	// header layout; counters get a 64-byte line each
+	private static final int MAGIC_AT = 0, VERSION_AT = 4, FINGERPRINT_AT = 8, SLOT_SIZE_AT = 16, SLOTS_AT = 20, CLIENT_AT = 24, EPOCH_AT = 32, READY_AT = 64;
+	private static final int REQUESTS_AT = 128, REPLIES_AT = 256, DATA_AT = 384;
+
+	private static final byte OK = 0, FAILED = 1;
+
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	// waiting: spin, then yield, then park
+	private static final int SPINS = 1000, YIELDS = 1100;
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+	// how long the server waits for room for a reply before checking on the client
+	private static final long REPLY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final File file;
+	private final ClassLoader loader;
+	private final Method[] methods;
+	private final Ring requests;
+	private final Ring replies;
+	private final long timeoutNanos;
+	private final FileLock client;	// held until the process exits
+	private long lastCall;	// guarded by this; the epoch in the upper half
+
+	private SharedMemoryProxy(File file, ClassLoader loader, Method[] methods, MappedByteBuffer mapping, FileLock client,
+			long epoch, long timeoutMillis) {
+		this.file = file;
+		this.loader = loader;
+		this.methods = methods;
+		this.client = client;
+		this.lastCall = epoch << 32;
+		this.requests = Ring.requests(mapping);
+		this.replies = Ring.replies(mapping);
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	// Factories
+
+	public static <T> T connect(Class<T> interfaceClass, File file) throws IOException {
+		return connect(interfaceClass, file, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Connects to the server on the file, waiting up to the timeout for it to
+	 * appear. The timeout also applies to every call.
+	 */
+	public static <T> T connect(Class<T> interfaceClass, File file, long timeoutMillis) throws IOException {
+		Method[] methods = methodsOf(interfaceClass);
+		MappedByteBuffer mapping = awaitServer(file, timeoutMillis);
+		if (mapping.getLong(FINGERPRINT_AT) != fingerprintOf(methods))
+			throw new IllegalArgumentException(file + " is not serving " + interfaceClass.getName());
+		FileLock client = claimClient(file);
+		// only the lock holder moves the epoch on
+		long epoch = (long)LONGS.getAndAdd(mapping, EPOCH_AT, 1L) + 1;
+
+		return interfaceClass.cast(Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new SharedMemoryProxy(file, interfaceClass.getClassLoader(), methods, mapping, client, epoch, timeoutMillis)));
+	}
+
+	public static <T> Server serve(Class<T> interfaceClass, T target, File file) throws IOException {
+		return serve(interfaceClass, target, file, DEFAULT_SLOT_SIZE, DEFAULT_SLOTS);
+	}
+
+	/**
+	 * Creates (or replaces) the file and starts answering calls from it on a
+	 * daemon thread of its own.
+	 */
+	public static <T> Server serve(Class<T> interfaceClass, T target, File file, int slotSize, int slots) throws IOException {
+		if (slotSize < 64 || slots < 1)
+			throw new IllegalArgumentException("slots must hold at least 64 bytes");
+		Method[] methods = methodsOf(interfaceClass);
+		MappedByteBuffer mapping = create(file, fingerprintOf(methods), slotSize, slots);
+		Server server = new Server(target, methods, mapping,
+			FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+		server.thread.start();
+		return server;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			switch (method.getName()) {
+			case "equals":   return proxy == args[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			default:         return "SharedMemory[" + file + "]";
+			}
+		}
+
+		int id = indexOf(method);
+		synchronized (this) {
+			long call = ++lastCall;
+			long deadline = System.nanoTime() + timeoutNanos;
+
+			ByteBuffer request = claimRequest(deadline);
+			request.putLong(call).putInt(id);
+			int argc = args == null ? 0 : args.length;
+			request.put((byte)argc);
+			for (int i = 0; i < argc; i++)
+				put(request, args[i]);
+			requests.publish();
+
+			for (;;) {
+				ByteBuffer reply = replies.take(deadline);
+				long answered = reply.getLong();
+				if (answered != call) {
+					// the reply to a call that already timed out, or to an earlier client
+					replies.release();
+					continue;
+				}
+				byte status = reply.get();
+				Object value = InvocationLog.readValue(reply);
+				String message = status == OK ? null : (String)InvocationLog.readValue(reply);
+				replies.release();
+				if (status == OK)
+					return value;
+				throw rebuild(loader, (String)value, message);
+			}
+		}
+	}
+
+	// Implementation support
+
+	/**
+	 * Waits for room for a request. With no call of ours outstanding, any reply
+	 * that turns up meanwhile is stale and is discarded, so that a server waiting
+	 * for room for it gets to take our request.
+	 */
+	private ByteBuffer claimRequest(long deadline) {
+		ByteBuffer request;
+		for (int round = 0; (request = requests.tryClaim()) == null; ) {
+			while (replies.poll() != null)
+				replies.release();
+			if (System.nanoTime() > deadline)
+				throw new IllegalStateException("no room for the call: the other side is not keeping up");
+			round = idle(round);
+		}
+		return request;
+	}
+
+	private int indexOf(Method method) {
+		for (int i = 0; i < methods.length; i++) {
+			if (methods[i].equals(method))
+				return i;
+		}
+		throw new UnsupportedOperationException(method.toString());
+	}
+
+	private static void put(ByteBuffer buffer, Object value) {
+		if (buffer.remaining() < InvocationLog.sizeBound(value))
+			throw new IllegalArgumentException("call does not fit in a " + buffer.capacity() + " byte slot");
+		InvocationLog.writeValue(buffer, value);
+	}
+
+	/**
+	 * Builds the exception the target threw. The class name comes from another
+	 * process, so the class is only loaded, not initialized, until it is known
+	 * to be an unchecked exception.
+	 */
+	private static Throwable rebuild(ClassLoader loader, String className, String message) {
+		try {
+			Class<?> type = Class.forName(className, false, loader);
+			if (RuntimeException.class.isAssignableFrom(type) || Error.class.isAssignableFrom(type)) {
+				Constructor<?> constructor = type.getConstructor(String.class);
+				return (Throwable)constructor.newInstance(message);
+			}
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// fall through
+		}
+		return new IllegalStateException(className + ": " + message);
+	}
+
+	private static Method[] methodsOf(Class<?> interfaceClass) {
+		Method[] methods = InvocationLog.methodsOf(interfaceClass);
+		for (Method method : methods) {
+			if (isTransferable(method.getReturnType()) == false)
+				throw new IllegalArgumentException(method + " returns a type that cannot cross processes");
+			for (Class<?> type : method.getParameterTypes())
+				if (isTransferable(type) == false)
+					throw new IllegalArgumentException(method + " takes a type that cannot cross processes");
+		}
+		return methods;
+	}
+
+	private static boolean isTransferable(Class<?> type) {
+		return type.isPrimitive() || type == String.class
+			|| type == Integer.class || type == Long.class || type == Double.class || type == Float.class
+			|| type == Short.class || type == Byte.class || type == Character.class || type == Boolean.class;
+	}
+
+	private static long fingerprintOf(Method[] methods) {
+		long hash = 1125899906842597L;
+		for (Method method : methods) {
+			String signature = method.toGenericString();
+			for (int i = 0; i < signature.length(); i++)
+				hash = 31 * hash + signature.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Locks the client's word in the header, so a second client cannot corrupt
+	 * the rings. The channel stays open for as long as the lock is held.
+	 */
+	@SuppressWarnings("resource")
+	private static FileLock claimClient(File file) throws IOException {
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		FileLock lock;
+		try {
+			lock = channel.tryLock(CLIENT_AT, 8, false);
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			channel.close();
+			throw new IOException("another client is connected to " + file);
+		}
+		return lock;
+	}
+
+	private static MappedByteBuffer create(File file, long fingerprint, int slotSize, int slots) throws IOException {
+		if (file.exists() && file.delete() == false)
+			throw new IOException("cannot replace " + file);
+		long size = DATA_AT + 2L * slotSize * slots;
+		MappedByteBuffer mapping = map(file, size);
+		mapping.putInt(MAGIC_AT, MAGIC);
+		mapping.putInt(VERSION_AT, VERSION);
+		mapping.putLong(FINGERPRINT_AT, fingerprint);
+		mapping.putInt(SLOT_SIZE_AT, slotSize);
+		mapping.putInt(SLOTS_AT, slots);
+		LONGS.setRelease(mapping, READY_AT, 1L);
+		return mapping;
+	}
+
+	private static MappedByteBuffer awaitServer(File file, long timeoutMillis) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (;;) {
+			if (file.length() >= DATA_AT) {
+				MappedByteBuffer mapping = map(file, file.length());
+				if ((long)LONGS.getAcquire(mapping, READY_AT) == 1L) {
+					if (mapping.getInt(MAGIC_AT) != MAGIC || mapping.getInt(VERSION_AT) != VERSION)
+						throw new IOException(file + " is not a shared-memory proxy file");
+					return mapping;
+				}
+			}
+			if (System.nanoTime() > deadline)
+				throw new IOException("no server on " + file);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+	}
+
+	private static MappedByteBuffer map(File file, long size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (raf.length() < size)
+				raf.setLength(size);
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	/**
+	 * Waits one round: spins at first, then yields, then parks.
+	 *
+	 * @return the next round
+	 */
+	static int idle(int round) {
+		if (round < SPINS)
+			Thread.onSpinWait();
+		else if (round < YIELDS)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(PARK_NANOS);
+		return round + 1;
+	}
+
+	/**
+	 * Ring is one single-producer, single-consumer ring of slots in the mapping.
+	 * Each slot starts with the length of its message.
+	 */
+	static final class Ring {
+
+		private final ByteBuffer mapping;
+		private final int tailAt;
+		private final int headAt;
+		private final ByteBuffer[] slots;
+
+		private Ring(ByteBuffer mapping, int countersAt, int dataAt) {
+			int slotSize = mapping.getInt(SLOT_SIZE_AT);
+			int count = mapping.getInt(SLOTS_AT);
+			this.mapping = mapping;
+			this.tailAt = countersAt;
+			this.headAt = countersAt + 64;
+			this.slots = new ByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				ByteBuffer slot = mapping.duplicate();
+				slot.position(dataAt + i * slotSize).limit(dataAt + (i + 1) * slotSize);
+				slots[i] = slot.slice();
+			}
+		}
+
+		static Ring requests(ByteBuffer mapping) {
+			return new Ring(mapping, REQUESTS_AT, DATA_AT);
+		}
+
+		static Ring replies(ByteBuffer mapping) {
+			return new Ring(mapping, REPLIES_AT, DATA_AT + mapping.getInt(SLOT_SIZE_AT) * mapping.getInt(SLOTS_AT));
+		}
+
+		/**
+		 * Producer side: waits for a free slot.
+		 *
+		 * @return the slot, positioned after its length
+		 */
+		ByteBuffer claim(long deadline) {
+			ByteBuffer slot;
+			for (int round = 0; (slot = tryClaim()) == null; ) {
+				if (System.nanoTime() > deadline)
+					throw new IllegalStateException("no room for the call: the other side is not keeping up");
+				round = idle(round);
+			}
+			return slot;
+		}
+
+		/**
+		 * Producer side.
+		 *
+		 * @return a free slot, positioned after its length, or null if there is none
+		 */
+		ByteBuffer tryClaim() {
+			long tail = (long)LONGS.getOpaque(mapping, tailAt);
+			if (tail - (long)LONGS.getAcquire(mapping, headAt) >= slots.length)
+				return null;
+			ByteBuffer slot = slots[(int)(tail % slots.length)];
+			slot.clear().position(4);
+			return slot;
+		}
+
+		/**
+		 * Producer side: makes the claimed slot visible to the consumer.
+		 */
+		void publish() {
+			long tail = (long)LONGS.getOpaque(mapping, tailAt);
+			ByteBuffer slot = slots[(int)(tail % slots.length)];
+			slot.putInt(0, slot.position());
+			LONGS.setRelease(mapping, tailAt, tail + 1);
+		}
+
+		/**
+		 * Consumer side: waits for the next message.
+		 *
+		 * @return the slot, positioned after its length and limited to the message
+		 */
+		ByteBuffer take(long deadline) {
+			ByteBuffer slot;
+			for (int round = 0; (slot = poll()) == null; ) {
+				if (System.nanoTime() > deadline)
+					throw new IllegalStateException("no reply within the timeout");
+				round = idle(round);
+			}
+			return slot;
+		}
+
+		/**
+		 * Consumer side.
+		 *
+		 * @return the next message, or null if there is none yet
+		 */
+		ByteBuffer poll() {
+			long head = (long)LONGS.getOpaque(mapping, headAt);
+			if (head == (long)LONGS.getAcquire(mapping, tailAt))
+				return null;
+			ByteBuffer slot = slots[(int)(head % slots.length)];
+			slot.clear();
+			slot.limit(slot.getInt(0)).position(4);
+			return slot;
+		}
+
+		/**
+		 * Consumer side: hands the slot just taken back to the producer.
+		 */
+		void release() {
+			long head = (long)LONGS.getOpaque(mapping, headAt);
+			LONGS.setRelease(mapping, headAt, head + 1);
+		}
+	}
+
+	/**
+	 * Server answers calls from the file on its own daemon thread until closed.
+	 */
+	public static class Server implements Closeable {
+
+		private final Object target;
+		private final Method[] methods;
+		private final Ring requests;
+		private final Ring replies;
+		private final FileChannel channel;	// to see whether a client holds the lock
+		private final Thread thread;
+		private volatile boolean closed;
+
+		private Server(Object target, Method[] methods, MappedByteBuffer mapping, FileChannel channel) {
+			this.target = target;
+			this.methods = methods;
+			this.channel = channel;
+			this.requests = Ring.requests(mapping);
+			this.replies = Ring.replies(mapping);
+			this.thread = VirtualThreads.daemonThreads().newThread(this::run);
+			thread.setName("shared-memory-server");
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+
+		private void run() {
+			int round = 0;
+			while (closed == false) {
+				ByteBuffer request = requests.poll();
+				if (request == null) {
+					round = idle(round);
+					continue;
+				}
+				round = 0;
+
+				long call = -1;
+				Method method = null;
+				Object[] args = null;
+				Throwable thrown = null;
+				try {
+					call = request.getLong();
+					int id = request.getInt();
+					if (id < 0 || id >= methods.length)
+						throw new IllegalArgumentException("no method " + id);
+					method = methods[id];
+					args = new Object[request.get()];
+					for (int i = 0; i < args.length; i++)
+						args[i] = InvocationLog.readValue(request);
+				} catch (Throwable t) {
+					thrown = t;
+				} finally {
+					requests.release();
+				}
+
+				Object value = null;
+				if (thrown == null) {
+					try {
+						value = method.invoke(target, args);
+					} catch (InvocationTargetException e) {
+						thrown = e.getCause();
+					} catch (Throwable t) {
+						thrown = t;
+					}
+				}
+				reply(call, value, thrown);
+			}
+		}
+
+		private void reply(long call, Object value, Throwable thrown) {
+			ByteBuffer reply = claimReply();
+			if (reply == null)
+				return;
+			try {
+				reply.putLong(call);
+				if (thrown == null) {
+					reply.put(OK);
+					put(reply, value);
+				} else {
+					reply.put(FAILED);
+					put(reply, thrown.getClass().getName());
+					put(reply, String.valueOf(thrown.getMessage()));
+				}
+			} catch (RuntimeException e) {
+				reply.clear().position(4);
+				reply.putLong(call).put(FAILED);
+				String className = thrown == null ? IllegalStateException.class.getName() : thrown.getClass().getName();
+				putTruncated(reply, className, reply.remaining() / 2);
+				putTruncated(reply, "reply does not fit in a slot", reply.remaining());
+			}
+			replies.publish();
+		}
+
+		/**
+		 * Waits for room for a reply for as long as a client is connected.
+		 *
+		 * @return the slot, or null if the reply is to be dropped
+		 */
+		private ByteBuffer claimReply() {
+			for (;;) {
+				try {
+					return replies.claim(System.nanoTime() + REPLY_WAIT_NANOS);
+				} catch (IllegalStateException e) {
+					if (closed || clientGone())
+						return null;
+				}
+			}
+		}
+
+		private boolean clientGone() {
+			try (FileLock lock = channel.tryLock(CLIENT_AT, 8, false)) {
+				return lock != null;
+			} catch (OverlappingFileLockException e) {
+				// held by a client in this process
+				return false;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Writes as much of the string as is sure to fit in the room given.
+		 */
+		private static void putTruncated(ByteBuffer buffer, String value, int room) {
+			// a char takes at most three bytes, after a tag and a length
+			int chars = Math.max(0, Math.min(value.length(), (room - 5) / 3));
+			InvocationLog.writeValue(buffer, value.substring(0, chars));
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.rac.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * StampedLockProxy makes a simple mutable bean safe to share between threads
+ * without changing the bean, by guarding every call with a {@link StampedLock}:
+ *
+ * {@code
+ * ITargetClass shared = StampedLockProxy.create(ITargetClass.class, new TargetClass("doit"));
+ * }
+ *
+ * Methods are sorted once per interface. Getters, and methods annotated with
+ * {@link Read}, run under an optimistic stamp: the call proceeds without any
+ * lock, and is repeated under a read lock only if a write overlapped it. All
+ * other methods, and those annotated with {@link Write}, take the write lock.
+ * {@code equals}, {@code hashCode} and {@code toString} take the read lock.
+ *
+ * Because an optimistic read can run alongside a write, only methods without
+ * side effects should be treated as reads; anything else should be marked
+ * with {@link Write}.
+ */
+class StampedLockProxy implements InvocationHandler {
+
+	/**
+	 * Marks a method as a side-effect-free read, eligible for optimistic reads.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Read {}
+
+	/**
+	 * Marks a method as a write, whatever its name suggests.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Write {}
+
+	private static final int OPTIMISTIC = 0, READ = 1, WRITE = 2;
+
+	private static final ClassValue<Map<Method,Integer>> MODES = new ClassValue<Map<Method,Integer>>() {
+		@Override
+		protected Map<Method,Integer> computeValue(Class<?> type) {
+			Map<Method,Integer> modes = new HashMap<Method,Integer>();
+			for (Method method : type.getMethods())
+				modes.put(method, modeOf(method));
+			for (Method method : Object.class.getMethods())
+				modes.put(method, READ);
+			return modes;
+		}
+	};
+
+	private final Object target;
+	private final Map<Method,Integer> modes;
+	private final StampedLock lock = new StampedLock();
+
+	public StampedLockProxy(Class<?> interfaceClass, Object target) {
+		this.target = target;
+		this.modes = MODES.get(interfaceClass);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new StampedLockProxy(interfaceClass, target));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		try {
+			return guarded(method, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private Object guarded(Method method, Object[] args)
+			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		Integer mode = modes.get(method);
+		if (mode == null || mode == WRITE) {
+			long stamp = lock.writeLock();
+			try {
+				return method.invoke(target, args);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		if (mode == OPTIMISTIC) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				try {
+					Object result = method.invoke(target, args);
+					if (lock.validate(stamp))
+						return result;
+				} catch (InvocationTargetException e) {
+					// a read that failed alongside a write is retried under the lock
+					if (lock.validate(stamp))
+						throw e;
+				}
+			}
+		}
+
+		long stamp = lock.readLock();
+		try {
+			return method.invoke(target, args);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	// Implementation support
+
+	private static int modeOf(Method method) {
+		return isRead(method) ? OPTIMISTIC : WRITE;
+	}
+
+	/**
+	 * @return true if the method is a side-effect-free read: a getter or a method
+	 * annotated with {@link Read}, and not annotated with {@link Write}
+	 */
+	static boolean isRead(Method method) {
+		if (method.isAnnotationPresent(Write.class))
+			return false;
+		return method.isAnnotationPresent(Read.class) || PropertySlots.isGetter(method);
+	}
+
+}
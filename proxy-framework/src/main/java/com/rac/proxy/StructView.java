@@ -0,0 +1,330 @@
+package com.rac.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * StructView stores records described by a bean interface in one flat, usually
+ * off-heap, {@code ByteBuffer} instead of as individual objects, and reads and
+ * writes them through flyweight views of that interface:
+ *
+ * {@code
+ * StructView<IPoint> points = StructView.allocate(IPoint.class, 10_000_000);
+ * StructView.Cursor<IPoint> cursor = points.cursor();
+ * while (cursor.next())
+ *     cursor.get().setX(cursor.index());
+ * }
+ *
+ * The layout is computed once per interface from its properties: each one gets
+ * a fixed offset, aligned to its own size, within a fixed-size record.
+ * Properties may be primitives or Strings; a String property must declare its
+ * maximum encoded length with {@link Length} on its getter or setter, and is
+ * stored as a two-byte length followed by that many bytes of UTF-8, padded to
+ * an even width so the fields after it stay aligned. A length of 0xFFFF marks
+ * a null String, so the longest @Length is 0xFFFE.
+ *
+ * A cursor is a single view that can be moved from record to record, so a scan
+ * over the whole buffer creates no record objects. Primitive values are still
+ * boxed on their way through the proxy's invocation handler, and Strings are
+ * decoded on every read.
+ */
+class StructView<T> {
+
+	/**
+	 * Length declares the maximum encoded length, in bytes, of a String property,
+	 * from 1 to {@link #MAX_LENGTH}.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Length {
+		int value();
+	}
+
+	public static final int MAX_LENGTH = 0xFFFE;
+
+	// the length prefix of a null String
+	private static final int NULL_LENGTH = 0xFFFF;
+
+	private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+		@Override
+		protected Layout computeValue(Class<?> type) {
+			return new Layout(type);
+		}
+	};
+
+	private final Class<T> interfaceClass;
+	private final Layout layout;
+	private final ByteBuffer buffer;
+	private final int size;
+
+	private StructView(Class<T> interfaceClass, ByteBuffer buffer) {
+		this.interfaceClass = interfaceClass;
+		this.layout = LAYOUTS.get(interfaceClass);
+		this.buffer = buffer.slice().order(buffer.order());
+		this.size = this.buffer.capacity() / layout.recordSize;
+	}
+
+	// Factories
+
+	/**
+	 * @return a view over a new, zeroed, direct buffer with room for the given
+	 * number of records
+	 */
+	public static <T> StructView<T> allocate(Class<T> interfaceClass, int records) {
+		long bytes = (long)LAYOUTS.get(interfaceClass).recordSize * records;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(records + " records do not fit in one buffer");
+		return new StructView<T>(interfaceClass, ByteBuffer.allocateDirect((int)bytes).order(ByteOrder.nativeOrder()));
+	}
+
+	/**
+	 * @return a view over the remaining bytes of an existing buffer, e.g. one
+	 * mapped from a file; its byte order is kept and any bytes past the last
+	 * whole record are ignored
+	 */
+	public static <T> StructView<T> wrap(Class<T> interfaceClass, ByteBuffer buffer) {
+		return new StructView<T>(interfaceClass, buffer);
+	}
+
+	/**
+	 * @return the size in bytes of one record of the interface
+	 */
+	public static int recordSize(Class<?> interfaceClass) {
+		return LAYOUTS.get(interfaceClass).recordSize;
+	}
+
+	// Accessors
+
+	public int size()             { return size; }
+	public ByteBuffer buffer()    { return buffer.duplicate().order(buffer.order()); }
+
+	/**
+	 * @return a view fixed on one record
+	 */
+	public T get(int index) {
+		Cursor<T> cursor = cursor();
+		cursor.moveTo(index);
+		return cursor.get();
+	}
+
+	/**
+	 * @return a new cursor, positioned before the first record
+	 */
+	public Cursor<T> cursor() {
+		return new Cursor<T>(this);
+	}
+
+	/**
+	 * Cursor is a flyweight view that can be moved across the records.
+	 */
+	public static class Cursor<T> implements InvocationHandler {
+
+		private final StructView<T> view;
+		private final T proxy;
+		private int index = -1;
+		private int base = -1;
+
+		private Cursor(StructView<T> view) {
+			this.view = view;
+			this.proxy = view.interfaceClass.cast(Proxy.newProxyInstance(
+				view.interfaceClass.getClassLoader(),
+				new Class<?>[] { view.interfaceClass },
+				this));
+		}
+
+		/**
+		 * @return the view of the interface, which always shows the record the
+		 * cursor is currently on
+		 */
+		public T get() {
+			return proxy;
+		}
+
+		public int index() {
+			return index;
+		}
+
+		public Cursor<T> moveTo(int index) {
+			if (index < 0 || index >= view.size)
+				throw new IndexOutOfBoundsException("record " + index + ", size " + view.size);
+			this.index = index;
+			this.base = index * view.layout.recordSize;
+			return this;
+		}
+
+		/**
+		 * Moves to the next record.
+		 *
+		 * @return false, leaving the cursor where it was, if there is none
+		 */
+		public boolean next() {
+			if (index + 1 >= view.size)
+				return false;
+			moveTo(index + 1);
+			return true;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			Layout layout = view.layout;
+
+			int slot = layout.slots.getterSlot(method);
+			if (slot >= 0)
+				return layout.read(view.buffer, checkedBase(), slot);
+
+			slot = layout.slots.setterSlot(method);
+			if (slot >= 0) {
+				layout.write(view.buffer, checkedBase(), slot, args[0]);
+				return null;
+			}
+
+			switch (method.getName()) {
+			case "equals":   return proxy == args[0];
+			case "hashCode": return System.identityHashCode(proxy);
+			case "toString": return layout.describe(view.buffer, base, index);
+			}
+			throw new UnsupportedOperationException(method.toString());
+		}
+
+		private int checkedBase() {
+			if (base < 0)
+				throw new IllegalStateException("cursor is not on a record");
+			return base;
+		}
+	}
+
+	/**
+	 * Layout is the fixed offset and encoding of every property of an interface.
+	 */
+	static final class Layout {
+
+		final PropertySlots slots;
+		final int[] offsets;
+		final Class<?>[] types;
+		final int[] lengths;
+		final int recordSize;
+
+		Layout(Class<?> interfaceClass) {
+			this.slots = PropertySlots.of(interfaceClass);
+			this.offsets = new int[slots.size()];
+			this.types = new Class<?>[slots.size()];
+			this.lengths = new int[slots.size()];
+
+			// widest fields first, so every field lands on its natural alignment
+			Integer[] order = new Integer[slots.size()];
+			int[] widths = new int[slots.size()];
+			for (int slot = 0; slot < order.length; slot++) {
+				order[slot] = slot;
+				types[slot] = slots.type(slot);
+				widths[slot] = widthOf(interfaceClass, slot);
+			}
+			Arrays.sort(order, (a, b) -> Integer.compare(alignmentOf(types[b]), alignmentOf(types[a])));
+
+			int offset = 0;
+			for (int slot : order) {
+				offsets[slot] = offset;
+				offset += widths[slot];
+			}
+			int alignment = order.length == 0 ? 1 : alignmentOf(types[order[0]]);
+			this.recordSize = Math.max(1, (offset + alignment - 1) / alignment * alignment);
+		}
+
+		private int widthOf(Class<?> interfaceClass, int slot) {
+			Class<?> type = types[slot];
+			if (type == String.class) {
+				Length length = annotation(slots.getter(slot));
+				if (length == null)
+					length = annotation(slots.setter(slot));
+				if (length == null || length.value() <= 0)
+					throw new IllegalArgumentException(interfaceClass.getName() + "." + slots.name(slot)
+						+ " needs a positive @Length to be stored in a struct");
+				if (length.value() > MAX_LENGTH)
+					throw new IllegalArgumentException(interfaceClass.getName() + "." + slots.name(slot)
+						+ " has a @Length over " + MAX_LENGTH + "; the length prefix is two bytes");
+				lengths[slot] = length.value();
+				return (2 + length.value() + 1) & ~1;
+			}
+			if (type.isPrimitive() == false || type == void.class)
+				throw new IllegalArgumentException(interfaceClass.getName() + "." + slots.name(slot)
+					+ " is a " + type.getName() + "; structs hold only primitives and Strings");
+			return alignmentOf(type);
+		}
+
+		private static Length annotation(Method method) {
+			return method == null ? null : method.getAnnotation(Length.class);
+		}
+
+		private static int alignmentOf(Class<?> type) {
+			if (type == long.class || type == double.class) return 8;
+			if (type == int.class || type == float.class)   return 4;
+			if (type == short.class || type == char.class)  return 2;
+			if (type == String.class)                        return 2;
+			return 1;
+		}
+
+		Object read(ByteBuffer buffer, int base, int slot) {
+			int at = base + offsets[slot];
+			Class<?> type = types[slot];
+			if (type == int.class)     return buffer.getInt(at);
+			if (type == long.class)    return buffer.getLong(at);
+			if (type == double.class)  return buffer.getDouble(at);
+			if (type == float.class)   return buffer.getFloat(at);
+			if (type == short.class)   return buffer.getShort(at);
+			if (type == char.class)    return buffer.getChar(at);
+			if (type == byte.class)    return buffer.get(at);
+			if (type == boolean.class) return buffer.get(at) != 0;
+
+			int length = buffer.getShort(at) & 0xFFFF;
+			if (length == NULL_LENGTH)
+				return null;
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++)
+				bytes[i] = buffer.get(at + 2 + i);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		void write(ByteBuffer buffer, int base, int slot, Object value) {
+			int at = base + offsets[slot];
+			Class<?> type = types[slot];
+			if (type == int.class)          buffer.putInt(at, (Integer)value);
+			else if (type == long.class)    buffer.putLong(at, (Long)value);
+			else if (type == double.class)  buffer.putDouble(at, (Double)value);
+			else if (type == float.class)   buffer.putFloat(at, (Float)value);
+			else if (type == short.class)   buffer.putShort(at, (Short)value);
+			else if (type == char.class)    buffer.putChar(at, (Character)value);
+			else if (type == byte.class)    buffer.put(at, (Byte)value);
+			else if (type == boolean.class) buffer.put(at, (byte)((Boolean)value ? 1 : 0));
+			else if (value == null)
+				buffer.putShort(at, (short)NULL_LENGTH);
+			else {
+				byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+				if (bytes.length > lengths[slot])
+					throw new IllegalArgumentException(slots.name(slot) + " is limited to " + lengths[slot]
+						+ " bytes, got " + bytes.length);
+				buffer.putShort(at, (short)bytes.length);
+				for (int i = 0; i < bytes.length; i++)
+					buffer.put(at + 2 + i, bytes[i]);
+			}
+		}
+
+		String describe(ByteBuffer buffer, int base, int index) {
+			StringBuilder text = new StringBuilder(slots.interfaceClass().getSimpleName()).append("#").append(index);
+			if (base < 0)
+				return text.toString();
+			text.append("[");
+			for (int slot = 0; slot < offsets.length; slot++)
+				text.append(slot == 0 ? "" : ", ").append(slots.name(slot)).append("=").append(read(buffer, base, slot));
+			return text.append("]").toString();
+		}
+	}
+
+}
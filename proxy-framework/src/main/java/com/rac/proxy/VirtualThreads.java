@@ -0,0 +1,105 @@
+package com.rac.proxy;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreads hands out virtual threads when the running JVM supports them,
+ * and daemon platform threads when it does not, so the proxies that run calls
+ * on other threads need not care which JVM they are on.
+ *
+ * The module is compiled for Java 11, which has no virtual thread API, so that
+ * API is looked up reflectively once, when the class is initialized.
+ */
+final class VirtualThreads {
+
+	private static final Method NEW_PER_TASK_EXECUTOR;
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_START;
+	static {
+		Method perTask = null, ofVirtual = null, name = null, start = null;
+		try {
+			perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			name = builder.getMethod("name", String.class);
+			start = builder.getMethod("start", Runnable.class);
+		} catch (ReflectiveOperationException e) {
+			perTask = null;
+		}
+		NEW_PER_TASK_EXECUTOR = perTask;
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_START = start;
+	}
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private static volatile ExecutorService shared;
+
+	private VirtualThreads() {}
+
+	public static boolean supported() {
+		return NEW_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * @return a new executor that starts one virtual thread per task, or an
+	 * unbounded pool of daemon threads on JVMs without virtual threads
+	 */
+	public static ExecutorService newPerTaskExecutor() {
+		if (supported()) try {
+			return (ExecutorService)NEW_PER_TASK_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// fall through to platform threads
+		}
+		return Executors.newCachedThreadPool(daemonThreads());
+	}
+
+	/**
+	 * @return a process-wide per-task executor, created on first use and never shut down
+	 */
+	public static ExecutorService executor() {
+		ExecutorService executor = shared;
+		if (executor == null) {
+			synchronized (VirtualThreads.class) {
+				if ((executor = shared) == null)
+					shared = executor = newPerTaskExecutor();
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Starts the task on a new virtual thread, or a daemon platform thread on JVMs
+	 * without virtual threads.
+	 */
+	public static Thread start(String name, Runnable task) {
+		if (supported()) try {
+			Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+			return (Thread)BUILDER_START.invoke(builder, task);
+		} catch (ReflectiveOperationException e) {
+			// fall through to platform threads
+		}
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	static ThreadFactory daemonThreads() {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "proxy-worker-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+}
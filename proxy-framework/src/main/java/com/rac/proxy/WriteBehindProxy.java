@@ -0,0 +1,300 @@
+package com.rac.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WriteBehindProxy absorbs setter calls on targets whose writes are expensive,
+ * and applies them later, in batches, keeping only the latest value written to
+ * each property:
+ *
+ * {@code
+ * IAccount account = WriteBehindProxy.create(IAccount.class, persistentAccount, 16, 100);
+ * }
+ *
+ * A setter only records its value in an overlay, so reads through the proxy
+ * see their own writes at once. The overlay is applied to the target when
+ * {@code maxPending} properties are waiting, or {@code maxDelayMillis} after
+ * the first of them was written, whichever is first; so no write reaches the
+ * target later than the delay plus the time it takes to apply the batch. Calls
+ * to anything other than a property accessor flush first, so the target is
+ * up to date before it is asked to do real work.
+ *
+ * {@link #flush} applies the overlay immediately, and {@link #close} flushes
+ * and then refuses further writes. If a setter on the target throws, the value
+ * is kept for the next flush unless a newer one has been written since.
+ */
+class WriteBehindProxy implements InvocationHandler {
+
+	private static final ScheduledExecutorService timer =
+		Executors.newSingleThreadScheduledExecutor(VirtualThreads.daemonThreads());
+
+	private final Object target;
+	private final PropertySlots slots;
+	private final int maxPending;
+	private final long maxDelayMillis;
+	private final Stats stats = new Stats();
+
+	// guarded by this
+	private final long[] dirty;
+	private final Object[] pending;
+	private final long[] inFlight;
+	private final Object[] flushing;
+	private int dirtyCount;
+	private long firstDirtyNanos;
+	private boolean flushScheduled;
+	private boolean flushQueued;
+	private boolean closed;
+
+	// held while values are applied, so flushes never overlap
+	private final Object flushLock = new Object();
+
+	public WriteBehindProxy(Class<?> interfaceClass, Object target, int maxPending, long maxDelayMillis) {
+		if (maxPending < 1)
+			throw new IllegalArgumentException("maxPending must be at least 1");
+		this.target = target;
+		this.slots = PropertySlots.of(interfaceClass);
+		this.maxPending = maxPending;
+		this.maxDelayMillis = maxDelayMillis;
+		this.dirty = new long[(slots.size() + 63) >>> 6];
+		this.pending = new Object[slots.size()];
+		this.inFlight = new long[dirty.length];
+		this.flushing = new Object[slots.size()];
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		int slot = slots.setterSlot(method);
+		if (slot >= 0) {
+			write(slot, args[0]);
+			return null;
+		}
+
+		slot = slots.getterSlot(method);
+		if (slot >= 0) {
+			synchronized (this) {
+				if (isSet(dirty, slot))
+					return pending[slot];
+				if (isSet(inFlight, slot))
+					return flushing[slot];
+			}
+		} else if (method.getDeclaringClass() != Object.class) {
+			flush();
+		}
+
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Factories
+
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> interfaceClass, T target, int maxPending, long maxDelayMillis) {
+		return (T)Proxy.newProxyInstance(
+			interfaceClass.getClassLoader(),
+			new Class<?>[] { interfaceClass },
+			new WriteBehindProxy(interfaceClass, target, maxPending, maxDelayMillis));
+	}
+
+	/**
+	 * Applies every pending write to the target before returning.
+	 */
+	public static void flush(Object proxy) {
+		handlerOf(proxy).flush();
+	}
+
+	/**
+	 * Flushes, then makes any further write through the proxy fail.
+	 */
+	public static void close(Object proxy) {
+		WriteBehindProxy handler = handlerOf(proxy);
+		synchronized (handler) {
+			handler.closed = true;
+		}
+		handler.flush();
+	}
+
+	public static Stats stats(Object proxy) {
+		return handlerOf(proxy).stats;
+	}
+
+	// Implementation support
+
+	private static WriteBehindProxy handlerOf(Object proxy) {
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		if (handler instanceof WriteBehindProxy == false)
+			throw new IllegalArgumentException("not a write-behind proxy: " + proxy);
+		return (WriteBehindProxy)handler;
+	}
+
+	private static boolean isSet(long[] bits, int slot) {
+		return (bits[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	private void write(int slot, Object value) {
+		boolean flushNow = false;
+		boolean scheduleFlush = false;
+		synchronized (this) {
+			if (closed)
+				throw new IllegalStateException("write-behind proxy is closed");
+			stats.writes.incrementAndGet();
+			if (isSet(dirty, slot) == false) {
+				dirty[slot >>> 6] |= 1L << slot;
+				if (dirtyCount++ == 0)
+					firstDirtyNanos = System.nanoTime();
+			}
+			pending[slot] = value;
+
+			if (dirtyCount >= maxPending && flushQueued == false)
+				flushNow = flushQueued = true;
+			else if (flushScheduled == false && flushQueued == false)
+				scheduleFlush = flushScheduled = true;
+		}
+		if (flushNow)
+			VirtualThreads.executor().execute(this::backgroundFlush);
+		else if (scheduleFlush)
+			timer.schedule(() -> VirtualThreads.executor().execute(this::backgroundFlush), maxDelayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void backgroundFlush() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			// already counted; the values stay pending for the next trigger
+		}
+	}
+
+	private void flush() {
+		synchronized (flushLock) {
+			int count;
+			long dirtySince;
+			synchronized (this) {
+				flushScheduled = false;
+				flushQueued = false;
+				count = dirtyCount;
+				if (count == 0)
+					return;
+				dirtySince = firstDirtyNanos;
+				for (int word = 0; word < dirty.length; word++) {
+					inFlight[word] = dirty[word];
+					dirty[word] = 0;
+				}
+				System.arraycopy(pending, 0, flushing, 0, pending.length);
+				Arrays.fill(pending, null);
+				dirtyCount = 0;
+			}
+
+			int applied = 0;
+			try {
+				for (int word = 0; word < inFlight.length; word++) {
+					long bits = inFlight[word];
+					while (bits != 0) {
+						int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+						apply(slot, flushing[slot]);
+						synchronized (this) {
+							inFlight[word] &= ~(1L << slot);
+							flushing[slot] = null;
+						}
+						applied++;
+						bits &= bits - 1;
+					}
+				}
+			} catch (RuntimeException e) {
+				stats.failures.incrementAndGet();
+				requeueInFlight();
+				throw e;
+			} finally {
+				stats.applied.addAndGet(applied);
+				stats.flushes.incrementAndGet();
+				stats.recordStaleness(System.nanoTime() - dirtySince);
+			}
+		}
+	}
+
+	/**
+	 * Puts writes that could not be applied back in the overlay, unless they have
+	 * been overwritten in the meantime, and arranges another attempt.
+	 */
+	private void requeueInFlight() {
+		boolean scheduleFlush = false;
+		synchronized (this) {
+			for (int slot = 0; slot < flushing.length; slot++) {
+				if (isSet(inFlight, slot) == false)
+					continue;
+				if (isSet(dirty, slot) == false) {
+					dirty[slot >>> 6] |= 1L << slot;
+					pending[slot] = flushing[slot];
+					if (dirtyCount++ == 0)
+						firstDirtyNanos = System.nanoTime();
+				}
+				inFlight[slot >>> 6] &= ~(1L << slot);
+				flushing[slot] = null;
+			}
+			if (dirtyCount > 0 && flushScheduled == false)
+				scheduleFlush = flushScheduled = true;
+		}
+		if (scheduleFlush)
+			timer.schedule(() -> VirtualThreads.executor().execute(this::backgroundFlush), maxDelayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void apply(int slot, Object value) {
+		try {
+			slots.setterHandle(slot).invokeExact(target, value);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * Stats shows how well writes are being coalesced, and how stale the target
+	 * has been allowed to get.
+	 */
+	public static class Stats {
+
+		private final AtomicLong writes = new AtomicLong();
+		private final AtomicLong applied = new AtomicLong();
+		private final AtomicLong flushes = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong maxStaleness = new AtomicLong();
+
+		public long getWrites()             { return writes.get(); }
+		public long getApplied()            { return applied.get(); }
+		public long getFlushes()            { return flushes.get(); }
+		public long getFailures()           { return failures.get(); }
+		public long getMaxStalenessNanos()  { return maxStaleness.get(); }
+
+		/**
+		 * @return writes absorbed per write applied to the target
+		 */
+		public double getCoalescingRatio() {
+			long applied = getApplied();
+			return applied == 0 ? 0 : (double)getWrites() / applied;
+		}
+
+		private void recordStaleness(long nanos) {
+			maxStaleness.accumulateAndGet(nanos, Math::max);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("writes=%d applied=%d flushes=%d failures=%d coalescing=%.2f maxStaleness=%dus",
+				getWrites(), getApplied(), getFlushes(), getFailures(), getCoalescingRatio(), getMaxStalenessNanos() / 1000);
+		}
+	}
+
+}
@@ -1,3 +1,5 @@
+package com.rac.proxy;
+
 import static org.junit.Assert.*;
 
 import org.junit.Test;
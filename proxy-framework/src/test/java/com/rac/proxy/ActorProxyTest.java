@@ -0,0 +1,117 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ActorProxyTest {
+
+	interface ICounter {
+		public void add(int n);
+		public long total();
+		public String owner();
+		public long fail();
+	}
+	
+	interface ICounterActor {
+		public void add(int n);
+		public CompletableFuture<Long> total();
+		public String owner();
+		public CompletableFuture<Long> fail();
+	}
+	
+	/**
+	 * Not thread safe on purpose: lost updates would show up in the total.
+	 */
+	static class Counter implements ICounter {
+		long total;
+		
+		public void add(int n)     { total += n; }
+		public long total()        { return total; }
+		public String owner()      { return Thread.currentThread().getName(); }
+		public long fail()         { throw new IllegalStateException("boom"); }
+	}
+	
+	@Test
+	public void testCallsRunInOrderOnOneThread() throws Exception {
+		ICounterActor actor = ActorProxy.create(ICounterActor.class, ICounter.class, new Counter(), 16);
+		
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		List<Future<?>> posters = new ArrayList<Future<?>>();
+		for (int t = 0; t < 4; t++)
+			posters.add(threads.submit(() -> { for (int i = 0; i < 10000; i++) actor.add(1); }));
+		for (Future<?> poster : posters)
+			poster.get(10, TimeUnit.SECONDS);
+		threads.shutdown();
+		
+		assertEquals( actor.total().get(5, TimeUnit.SECONDS).longValue(), 40000L );
+		assertTrue( actor.owner().startsWith("actor-") );
+		
+		ActorProxy.Stats stats = ActorProxy.stats(actor);
+		assertEquals( stats.getPosted(), 40002 );
+		assertTrue( stats.getAverageBatchSize() >= 1 );
+	}
+	
+	@Test
+	public void testFailureCompletesFuture() throws Exception {
+		ICounterActor actor = ActorProxy.create(ICounterActor.class, ICounter.class, new Counter());
+		try {
+			actor.fail().get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue( e.getCause() instanceof IllegalStateException );
+		}
+	}
+	
+	@Test
+	public void testCloseDrainsThenRejects() throws Exception {
+		ICounterActor actor = ActorProxy.create(ICounterActor.class, ICounter.class, new Counter());
+		for (int i = 0; i < 100; i++)
+			actor.add(1);
+		CompletableFuture<Long> total = actor.total();
+		
+		assertTrue( ActorProxy.awaitTermination(actor, 5, TimeUnit.SECONDS) );
+		assertEquals( total.get().longValue(), 100L );
+		try {
+			actor.add(1);
+			fail();
+		} catch (RejectedExecutionException e) {
+		}
+	}
+	
+	@Test
+	public void testOwnerEndsWhenProxyIsDropped() throws Exception {
+		Thread[] owner = new Thread[1];
+		ICounterActor actor = ActorProxy.create(ICounterActor.class, ICounter.class, new Counter() {
+			@Override
+			public long total() {
+				owner[0] = Thread.currentThread();
+				return super.total();
+			}
+		});
+		actor.add(1);
+		assertEquals( actor.total().get(5, TimeUnit.SECONDS).longValue(), 1L );
+		actor = null;
+		
+		for (int i = 0; i < 100 && owner[0].isAlive(); i++) {
+			System.gc();
+			owner[0].join(100);
+		}
+		assertFalse( owner[0].isAlive() );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacityMustBePowerOfTwo() {
+		ActorProxy.create(ICounterActor.class, ICounter.class, new Counter(), 100);
+	}
+}
@@ -0,0 +1,128 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncProxyTest {
+
+	interface IService {
+		public String echo(String text);
+		public String fail(String message);
+		public void block(CountDownLatch started) throws InterruptedException;
+	}
+	
+	interface IServiceAsync {
+		public CompletableFuture<String> echo(String text);
+		public CompletableFuture<String> fail(String message);
+		public CompletableFuture<Void> block(CountDownLatch started);
+	}
+	
+	static class Service implements IService {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		volatile boolean interrupted;
+		
+		public String echo(String text) {
+			peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return text;
+		}
+		
+		public String fail(String message) {
+			throw new IllegalStateException(message);
+		}
+		
+		public void block(CountDownLatch started) throws InterruptedException {
+			started.countDown();
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				interrupted = true;
+				throw e;
+			}
+		}
+	}
+	
+	@Test
+	public void testResult() throws Exception {
+		IServiceAsync async = AsyncProxy.create(IServiceAsync.class, IService.class, new Service());
+		assertEquals( async.echo("doit").get(5, TimeUnit.SECONDS), "doit" );
+	}
+	
+	@Test
+	public void testException() throws Exception {
+		IServiceAsync async = AsyncProxy.create(IServiceAsync.class, IService.class, new Service());
+		try {
+			async.fail("Texas").get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue( e.getCause() instanceof IllegalStateException );
+			assertEquals( e.getCause().getMessage(), "Texas" );
+		}
+	}
+	
+	@Test
+	public void testConcurrencyLimit() throws Exception {
+		Service service = new Service();
+		IServiceAsync async = AsyncProxy.create(IServiceAsync.class, IService.class, service, 2);
+		
+		List<CompletableFuture<String>> calls = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 8; i++)
+			calls.add(async.echo("call" + i));
+		for (int i = 0; i < 8; i++)
+			assertEquals( calls.get(i).get(5, TimeUnit.SECONDS), "call" + i );
+		
+		assertTrue( service.peak.get() <= 2 );
+	}
+	
+	@Test
+	public void testConcurrencyLimitIsSharedPerTarget() throws Exception {
+		Service service = new Service();
+		IServiceAsync first = AsyncProxy.create(IServiceAsync.class, IService.class, service, 2);
+		IServiceAsync second = AsyncProxy.create(IServiceAsync.class, IService.class, service, 2);
+		
+		List<CompletableFuture<String>> calls = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 8; i++)
+			calls.add((i % 2 == 0 ? first : second).echo("call" + i));
+		for (int i = 0; i < 8; i++)
+			assertEquals( calls.get(i).get(5, TimeUnit.SECONDS), "call" + i );
+		
+		assertTrue( service.peak.get() <= 2 );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testTargetHasOneLimit() {
+		Service service = new Service();
+		AsyncProxy.create(IServiceAsync.class, IService.class, service, 2);
+		AsyncProxy.create(IServiceAsync.class, IService.class, service, 3);
+	}
+	
+	@Test
+	public void testCancellationInterrupts() throws Exception {
+		Service service = new Service();
+		IServiceAsync async = AsyncProxy.create(IServiceAsync.class, IService.class, service);
+		
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<Void> call = async.block(started);
+		assertTrue( started.await(5, TimeUnit.SECONDS) );
+		call.cancel(true);
+		
+		for (int i = 0; i < 100 && service.interrupted == false; i++)
+			Thread.sleep(10);
+		assertTrue( service.interrupted );
+	}
+}
@@ -0,0 +1,142 @@
+package com.rac.proxy;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchingProxyTest {
+
+	interface IUsers {
+		public String getUser(Integer id);
+		public String getUser(String name);
+		public String getVersion();
+	}
+	
+	static class Users implements IUsers {
+		final AtomicInteger batches = new AtomicInteger();
+		
+		public String getUser(Integer id) { return "user" + id; }
+		public String getUser(String name) { return "named " + name; }
+		public String getVersion()        { return "1.0"; }
+		
+		public Map<Integer,String> getUsers(Set<Integer> ids) {
+			batches.incrementAndGet();
+			Map<Integer,String> users = new HashMap<Integer,String>();
+			for (Integer id : ids)
+				users.put(id, getUser(id));
+			return users;
+		}
+	}
+	
+	static final Method GET_USER;
+	static {
+		try {
+			GET_USER = IUsers.class.getMethod("getUser", Integer.class);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	static List<Future<String>> callConcurrently(final IUsers users, Integer... ids) throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(ids.length);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		for (final Integer id : ids)
+			results.add(threads.submit(() -> { start.await(); return users.getUser(id); }));
+		start.countDown();
+		threads.shutdown();
+		return results;
+	}
+	
+	@Test
+	public void testSingleCallIsFlushedByTime() {
+		Users backend = new Users();
+		IUsers users = BatchingProxy.create(IUsers.class, backend, GET_USER, backend::getUsers, 100, 1000);
+		assertEquals( users.getUser(7), "user7" );
+		assertEquals( backend.batches.get(), 1 );
+	}
+	
+	@Test
+	public void testFullBatchIsSentAtOnce() throws Exception {
+		Users backend = new Users();
+		IUsers users = BatchingProxy.create(IUsers.class, backend, GET_USER, backend::getUsers, 4, TimeUnit.SECONDS.toMicros(30));
+		List<Future<String>> results = callConcurrently(users, 1, 2, 3, 4);
+		for (int i = 0; i < results.size(); i++)
+			assertEquals( results.get(i).get(5, TimeUnit.SECONDS), "user" + (i + 1) );
+		
+		assertEquals( backend.batches.get(), 1 );
+		assertEquals( BatchingProxy.stats(users).getLargestBatch(), 4 );
+	}
+	
+	@Test
+	public void testDuplicateKeysShareOneSlot() throws Exception {
+		Users backend = new Users();
+		IUsers users = BatchingProxy.create(IUsers.class, backend, GET_USER, backend::getUsers, 100, TimeUnit.MILLISECONDS.toMicros(500));
+		List<Future<String>> results = callConcurrently(users, 5, 5, 6);
+		for (Future<String> result : results)
+			assertTrue( result.get(5, TimeUnit.SECONDS).startsWith("user") );
+		
+		BatchingProxy.Stats stats = BatchingProxy.stats(users);
+		assertEquals( stats.getCalls(), 3 );
+		assertEquals( stats.getDeduplicated(), 1 );
+		assertEquals( stats.getBatches(), 1 );
+	}
+	
+	@Test
+	public void testOtherMethodsPassThrough() {
+		Users backend = new Users();
+		IUsers users = BatchingProxy.create(IUsers.class, backend, GET_USER, backend::getUsers, 100, 1000);
+		assertEquals( users.getVersion(), "1.0" );
+		assertEquals( backend.batches.get(), 0 );
+	}
+	
+	@Test
+	public void testOverloadsPassThrough() {
+		Users backend = new Users();
+		IUsers users = BatchingProxy.create(IUsers.class, backend, GET_USER, backend::getUsers, 100, 1000);
+		assertEquals( users.getUser("ann"), "named ann" );
+		assertEquals( backend.batches.get(), 0 );
+	}
+	
+	@Test
+	public void testFullBatchDropsItsTimeout() throws Exception {
+		Users backend = new Users();
+		IUsers users = BatchingProxy.create(IUsers.class, backend, GET_USER, backend::getUsers, 1, TimeUnit.SECONDS.toMicros(30));
+		int queued = timerQueueSize();
+		for (int i = 0; i < 10; i++)
+			assertEquals( users.getUser(i), "user" + i );
+		assertTrue( timerQueueSize() <= queued );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testOverloadedNameIsRejected() {
+		Users backend = new Users();
+		BatchingProxy.create(IUsers.class, backend, "getUser", backend::getUsers, 100, 1000);
+	}
+	
+	@Test
+	public void testUniqueNameIsResolved() throws Exception {
+		assertEquals( BatchingProxy.batchedMethod(ITargetClass.class, "setText"), ITargetClass.class.getMethod("setText", String.class) );
+	}
+	
+	static int timerQueueSize() throws Exception {
+		Field timer = BatchingProxy.class.getDeclaredField("timer");
+		timer.setAccessible(true);
+		return ((ScheduledThreadPoolExecutor)timer.get(null)).getQueue().size();
+	}
+}
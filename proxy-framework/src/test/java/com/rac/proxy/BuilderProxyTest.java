@@ -0,0 +1,128 @@
+package com.rac.proxy;
+
+import java.util.List;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class BuilderProxyTest {
+
+	interface ITarget {
+		public String getName();
+		public String getTitle();
+		public void setName(String name);
+		public void setTitle(String title);		
+	}
+	
+	interface ITargetBuilder extends BuilderProxy.Builder {
+		public ITargetBuilder setName(String name);
+		public ITargetBuilder setTitle(String title);
+	}
+	
+	interface IResettableBuilder extends ITargetBuilder {
+		public IResettableBuilder reset();
+	}
+	
+	interface IEmployee {
+		public String getName();
+		public int getLevel();
+		public void setName(String name);
+		public void setLevel(int level);
+	}
+	
+	static class Target implements ITarget {
+		private String name;
+		private String title;
+		
+		public Target() {
+			this.name = "";
+			this.title = "";
+		}
+		
+		public Target(String name, String title) {
+			this.name = name;
+			this.title = title;
+		}
+		
+		public String getName() { return name; }
+		public String getTitle() { return title; }
+		
+		public void setName(String name) { this.name = name; }
+		public void setTitle(String title) { this.title = title; }
+	}
+	
+	static class Employee implements IEmployee {
+		private String name;
+		private int level;
+		
+		public String getName() { return name; }
+		public int getLevel() { return level; }
+		
+		public void setName(String name) { this.name = name; }
+		public void setLevel(int level) { this.level = level; }
+	}
+	
+	final static String NAME = "Jack";
+	final static String TITLE = "Architect";
+	
+	@Test
+	public void testWith() {
+		ITarget target = BuilderProxy.with(ITargetBuilder.class, new Target())
+			.setName(NAME)
+			.setTitle(TITLE)
+			.as(ITarget.class);
+		
+		assertNotNull(target);
+		assertEquals(target.getName(),NAME);
+		assertEquals(target.getTitle(),TITLE);		
+	}
+	
+	@Test
+	public void testUnsetPropertiesAreLeftAlone() {
+		ITarget target = BuilderProxy.with(ITargetBuilder.class, new Target(NAME, TITLE))
+			.setName("Jim")
+			.as(ITarget.class);
+		
+		assertEquals(target.getName(),"Jim");
+		assertEquals(target.getTitle(),TITLE);
+	}
+	
+	@Test
+	public void testObjectMethodsDescribeTheBuilder() {
+		ITargetBuilder builder = BuilderProxy.with(ITargetBuilder.class, new Target());
+		assertTrue(builder.equals(builder));
+		assertEquals(builder.hashCode(), System.identityHashCode(builder));
+		assertTrue(builder.toString().startsWith("BuilderProxy["));
+	}
+	
+	@Test
+	public void testUnknownMethodIsUnsupported() {
+		IResettableBuilder builder = BuilderProxy.with(IResettableBuilder.class, new Target());
+		try {
+			builder.reset();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			assertTrue(e.getMessage().contains("reset"));
+		}
+	}
+	
+	@Test
+	public void testBatch() {
+		List<IEmployee> employees = BuilderProxy.batch(IEmployee.class, Employee::new)
+			.column("name", new String[] { "Jim", "Audrey", "Mickey" })
+			.column("level", new int[] { 1, 2, 3 })
+			.build();
+		
+		assertEquals(employees.size(), 3);
+		assertEquals(employees.get(1).getName(), "Audrey");
+		assertEquals(employees.get(2).getLevel(), 3);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBatchRejectsRaggedColumns() {
+		BuilderProxy.batch(IEmployee.class, Employee::new)
+			.column("name", new String[] { "Jim", "Audrey" })
+			.column("level", new int[] { 1 });
+	}
+}
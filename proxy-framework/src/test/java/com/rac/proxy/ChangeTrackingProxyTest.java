@@ -0,0 +1,145 @@
+package com.rac.proxy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChangeTrackingProxyTest {
+
+	public interface IAccount {
+		String getOwner();
+		void setOwner(String owner);
+		long getBalance();
+		void setBalance(long balance);
+		boolean isFrozen();
+		void setFrozen(boolean frozen);
+	}
+	
+	public static class Account implements IAccount {
+		String owner;
+		long balance;
+		boolean frozen;
+		
+		public String getOwner()             { return owner; }
+		public void setOwner(String owner)   { this.owner = owner; }
+		public long getBalance()             { return balance; }
+		public void setBalance(long balance) { this.balance = balance; }
+		public boolean isFrozen()            { return frozen; }
+		public void setFrozen(boolean frozen) { this.frozen = frozen; }
+	}
+	
+	@Test
+	public void testWritesGoThroughAndAreRecorded() {
+		Account account = new Account();
+		IAccount proxy = ChangeTrackingProxy.create(IAccount.class, account);
+		assertFalse( ChangeTrackingProxy.isDirty(proxy) );
+		
+		proxy.setBalance(10);
+		assertEquals( account.getBalance(), 10 );
+		assertTrue( ChangeTrackingProxy.isDirty(proxy) );
+	}
+	
+	@Test
+	public void testTargetExceptionReachesCaller() {
+		IAccount proxy = ChangeTrackingProxy.create(IAccount.class, new Account() {
+			@Override
+			public void setBalance(long balance) { throw new IllegalArgumentException("negative"); }
+			
+			@Override
+			public String getOwner() { throw new IllegalStateException("closed"); }
+		});
+		try {
+			proxy.setBalance(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals( e.getMessage(), "negative" );
+		}
+		try {
+			proxy.getOwner();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( e.getMessage(), "closed" );
+		}
+		assertFalse( ChangeTrackingProxy.isDirty(proxy) );
+	}
+	
+	@Test
+	public void testConcurrentWritesRecordTheTargetsValue() throws Exception {
+		Account account = new Account() {
+			@Override
+			public void setBalance(long balance) {
+				this.balance = balance;
+				Thread.yield();
+			}
+		};
+		final IAccount proxy = ChangeTrackingProxy.create(IAccount.class, account);
+		ChangeTrackingProxy.Delta delta = new ChangeTrackingProxy.Delta(IAccount.class);
+		
+		for (int round = 0; round < 200; round++) {
+			Thread[] writers = new Thread[4];
+			for (int i = 0; i < writers.length; i++) {
+				final long value = round * 10 + i;
+				writers[i] = new Thread(() -> proxy.setBalance(value));
+				writers[i].start();
+			}
+			for (Thread writer : writers)
+				writer.join();
+			
+			ChangeTrackingProxy.drainChanges(proxy, delta);
+			assertEquals( delta.value(0), account.balance );
+		}
+	}
+	
+	@Test
+	public void testDrainEmitsOnlyChangedProperties() {
+		IAccount proxy = ChangeTrackingProxy.create(IAccount.class, new Account());
+		proxy.setOwner("ann");
+		proxy.setBalance(5);
+		proxy.setBalance(7);
+		
+		ChangeTrackingProxy.Delta delta = new ChangeTrackingProxy.Delta(IAccount.class);
+		assertEquals( ChangeTrackingProxy.drainChanges(proxy, delta), 2 );
+		assertEquals( delta.name(0), "balance" );
+		assertEquals( delta.value(0), 7L );
+		assertEquals( delta.name(1), "owner" );
+		assertEquals( delta.value(1), "ann" );
+		
+		assertFalse( ChangeTrackingProxy.isDirty(proxy) );
+		assertEquals( ChangeTrackingProxy.drainChanges(proxy, delta), 0 );
+		assertEquals( delta.size(), 0 );
+	}
+	
+	@Test
+	public void testApplyReplaysDelta() {
+		IAccount proxy = ChangeTrackingProxy.create(IAccount.class, new Account());
+		proxy.setFrozen(true);
+		proxy.setOwner("bob");
+		
+		ChangeTrackingProxy.Delta delta = new ChangeTrackingProxy.Delta(IAccount.class);
+		ChangeTrackingProxy.drainChanges(proxy, delta);
+		
+		Account replica = new Account();
+		replica.setBalance(3);
+		ChangeTrackingProxy.apply(replica, delta);
+		assertEquals( replica.getOwner(), "bob" );
+		assertTrue( replica.isFrozen() );
+		assertEquals( replica.getBalance(), 3 );
+	}
+	
+	@Test
+	public void testHandBuiltDelta() {
+		PropertySlots slots = PropertySlots.of(IAccount.class);
+		ChangeTrackingProxy.Delta delta = new ChangeTrackingProxy.Delta(IAccount.class)
+			.put(slots.slotOf("balance"), 42L);
+		
+		Account account = new Account();
+		ChangeTrackingProxy.apply(account, delta);
+		assertEquals( account.getBalance(), 42 );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDeltaMustMatchInterface() {
+		ITargetClass proxy = ChangeTrackingProxy.create(ITargetClass.class, new TargetClass("x"));
+		ChangeTrackingProxy.drainChanges(proxy, new ChangeTrackingProxy.Delta(IAccount.class));
+	}
+}
@@ -0,0 +1,112 @@
+package com.rac.proxy;
+
+import java.util.LongSummaryStatistics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColumnarTableTest {
+
+	public interface ITrade {
+		String getSymbol();
+		void setSymbol(String symbol);
+		int getQuantity();
+		void setQuantity(int quantity);
+		double getPrice();
+		void setPrice(double price);
+		boolean isSettled();
+		void setSettled(boolean settled);
+	}
+	
+	static ColumnarTable<ITrade> trades(int count) {
+		ColumnarTable<ITrade> table = ColumnarTable.create(ITrade.class);
+		ColumnarTable.Cursor<ITrade> cursor = table.cursor();
+		for (int i = 0; i < count; i++) {
+			ITrade trade = cursor.moveTo(table.add()).get();
+			trade.setSymbol(i % 2 == 0 ? "ACME" : "BOLT");
+			trade.setQuantity(i);
+			trade.setPrice(count - i);
+		}
+		return table;
+	}
+	
+	@Test
+	public void testViewsReadAndWriteColumns() {
+		ColumnarTable<ITrade> table = ColumnarTable.create(ITrade.class, 1);
+		ITrade first = table.get(table.add());
+		first.setSymbol("ACME");
+		first.setQuantity(3);
+		first.setSettled(true);
+		table.add();
+		
+		assertEquals( table.size(), 2 );
+		assertEquals( table.get(0).getSymbol(), "ACME" );
+		assertEquals( table.get(0).getQuantity(), 3 );
+		assertTrue( table.get(0).isSettled() );
+		assertNull( table.get(1).getSymbol() );
+		assertFalse( table.get(1).isSettled() );
+	}
+	
+	@Test
+	public void testAddCopiesRecord() {
+		ColumnarTable<ITrade> source = trades(1);
+		ColumnarTable<ITrade> copy = ColumnarTable.create(ITrade.class);
+		copy.add(source.get(0));
+		assertEquals( copy.get(0).getSymbol(), "ACME" );
+		assertEquals( copy.get(0).getPrice(), 1.0, 0 );
+	}
+	
+	@Test
+	public void testFilterAndAggregate() {
+		ColumnarTable<ITrade> table = trades(100000);
+		
+		int[] acme = table.filterString("symbol", "ACME"::equals);
+		assertEquals( acme.length, 50000 );
+		assertEquals( acme[1], 2 );
+		
+		int[] big = table.filterLong("quantity", q -> q >= 99990);
+		assertEquals( big.length, 10 );
+		
+		LongSummaryStatistics stats = table.longStats("quantity", acme);
+		assertEquals( stats.getMax(), 99998 );
+		assertEquals( table.longStats("quantity").getSum(), 99999L * 100000 / 2 );
+		assertEquals( table.doubleStats("price", big).getMin(), 1.0, 0 );
+		assertEquals( table.filterDouble("price", p -> p <= 2).length, 2 );
+	}
+	
+	@Test
+	public void testSortIsStable() {
+		ColumnarTable<ITrade> table = trades(20000);
+		
+		int[] byPrice = table.sortedRows("price");
+		assertEquals( byPrice[0], 19999 );
+		assertEquals( byPrice[19999], 0 );
+		
+		int[] bySymbol = table.sortedRows("symbol");
+		for (int i = 1; i < 10000; i++)
+			assertTrue( bySymbol[i - 1] < bySymbol[i] );
+		assertEquals( table.get(bySymbol[10000]).getSymbol(), "BOLT" );
+		assertEquals( bySymbol[10000], 1 );
+	}
+	
+	@Test
+	public void testCursorScan() {
+		ColumnarTable<ITrade> table = trades(10);
+		ColumnarTable.Cursor<ITrade> cursor = table.cursor();
+		int total = 0;
+		while (cursor.next())
+			total += cursor.get().getQuantity();
+		assertEquals( total, 45 );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProperty() {
+		trades(1).filterLong("volume", v -> true);
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testWrongColumnKind() {
+		trades(1).filterLong("price", v -> true);
+	}
+}
@@ -0,0 +1,119 @@
+package com.rac.proxy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimitProxyTest {
+
+	interface IBackend {
+		public String call(long sleepMillis);
+		public String hold(CountDownLatch entered, CountDownLatch release);
+	}
+	
+	static class Backend implements IBackend {
+		public String call(long sleepMillis) {
+			try {
+				Thread.sleep(sleepMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "done";
+		}
+		
+		public String hold(CountDownLatch entered, CountDownLatch release) {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "held";
+		}
+	}
+	
+	final ExecutorService threads = Executors.newCachedThreadPool();
+	
+	@After
+	public void shutdown() {
+		threads.shutdownNow();
+	}
+	
+	Future<String> hold(final IBackend backend, final CountDownLatch entered, final CountDownLatch release) {
+		return threads.submit(() -> backend.hold(entered, release));
+	}
+	
+	@Test
+	public void testTargetExceptionReachesCaller() {
+		ITargetClass proxy = ConcurrencyLimitProxy.create(ITargetClass.class, new TargetClass("a") {
+			@Override
+			public String getText() { throw new IllegalStateException("down"); }
+		});
+		try {
+			proxy.getText();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( e.getMessage(), "down" );
+		}
+		assertEquals( ConcurrencyLimitProxy.stats(proxy).getInFlight(), 0 );
+	}
+	
+	@Test
+	public void testFailFastOverLimit() throws Exception {
+		IBackend backend = ConcurrencyLimitProxy.create(IBackend.class, new Backend(), 2, 2, 2, 0, 0);
+		CountDownLatch entered = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<String> first = hold(backend, entered, release);
+		Future<String> second = hold(backend, entered, release);
+		assertTrue( entered.await(5, TimeUnit.SECONDS) );
+		
+		try {
+			backend.call(0);
+			fail();
+		} catch (RejectedExecutionException e) {
+			assertEquals( ConcurrencyLimitProxy.stats(backend).getRejected(), 1 );
+		}
+		
+		release.countDown();
+		assertEquals( first.get(5, TimeUnit.SECONDS), "held" );
+		assertEquals( second.get(5, TimeUnit.SECONDS), "held" );
+		assertEquals( backend.call(0), "done" );
+	}
+	
+	@Test
+	public void testQueuedCallWaitsForPermit() throws Exception {
+		IBackend backend = ConcurrencyLimitProxy.create(IBackend.class, new Backend(), 1, 1, 1, 1, 5000);
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<String> first = hold(backend, entered, release);
+		assertTrue( entered.await(5, TimeUnit.SECONDS) );
+		
+		Future<String> queued = threads.submit(() -> backend.call(0));
+		while (ConcurrencyLimitProxy.stats(backend).getQueued() == 0)
+			Thread.sleep(1);
+		release.countDown();
+		
+		assertEquals( first.get(5, TimeUnit.SECONDS), "held" );
+		assertEquals( queued.get(5, TimeUnit.SECONDS), "done" );
+		assertEquals( ConcurrencyLimitProxy.stats(backend).getRejected(), 0 );
+	}
+	
+	@Test
+	public void testLimitShrinksAsLatencyGrows() {
+		IBackend backend = ConcurrencyLimitProxy.create(IBackend.class, new Backend(), 50, 1, 100, 0, 0);
+		for (int i = 0; i < 10; i++)
+			backend.call(1);
+		for (int i = 0; i < 20; i++)
+			backend.call(10);
+		
+		assertTrue( ConcurrencyLimitProxy.stats(backend).getLimit() < 25 );
+	}
+}
@@ -0,0 +1,107 @@
+package com.rac.proxy;
+
+import org.junit.Test;
+import org.junit.Before;
+
+import static org.junit.Assert.*;
+
+public class CopyOnWriteProxyTest {
+
+	static final String TEXT = "doit";
+	static final String OTHER = "Texas";
+	static final String THIRD = "Austin";
+	static final TargetClass original = new TargetClass(TEXT);
+	
+	static ITargetClass proxy;
+
+	@Before
+	public void createProxy() {
+		original.setText(TEXT);
+		proxy = CopyOnWriteProxy.create( ITargetClass.class, original );		
+	}
+	
+	@Test
+	public void testNormalInvocation() {
+		assertEquals( proxy.getText(), TEXT );
+	}
+	
+	@Test
+	public void testSwappingAccessors() {
+		proxy.setText(OTHER);	
+		assertEquals( proxy.getText(), OTHER );
+		assertEquals( original.getText(), TEXT );
+	}
+	
+	@Test
+	public void testDependentMethod() {
+		proxy.setText(OTHER);	
+		assertEquals( proxy.toString(), TEXT );
+	}
+	
+	@Test
+	public void testForkSeesParentOverrides() {
+		proxy.setText(OTHER);
+		ITargetClass fork = CopyOnWriteProxy.fork(proxy);
+		assertEquals( fork.getText(), OTHER );
+		assertEquals( CopyOnWriteProxy.depth(fork), 1 );
+	}
+	
+	@Test
+	public void testForksAreIsolated() {
+		proxy.setText(OTHER);
+		ITargetClass fork = CopyOnWriteProxy.fork(proxy);
+		fork.setText(THIRD);
+		assertEquals( fork.getText(), THIRD );
+		assertEquals( proxy.getText(), OTHER );
+		
+		proxy.setText(TEXT);
+		assertEquals( fork.getText(), THIRD );
+		assertEquals( original.getText(), TEXT );
+	}
+	
+	@Test
+	public void testDeepChainsAreFlattened() {
+		ITargetClass fork = CopyOnWriteProxy.create( ITargetClass.class, original, 4 );
+		for (int i = 0; i < 20; i++) {
+			fork.setText(OTHER + i);
+			fork = CopyOnWriteProxy.fork(fork);
+		}
+		assertEquals( fork.getText(), OTHER + 19 );
+		assertTrue( CopyOnWriteProxy.depth(fork) <= 5 );
+	}
+	
+	@Test
+	public void testFlatten() {
+		proxy.setText(OTHER);
+		ITargetClass fork = CopyOnWriteProxy.fork(CopyOnWriteProxy.fork(proxy));
+		CopyOnWriteProxy.flatten(fork);
+		assertEquals( CopyOnWriteProxy.depth(fork), 1 );
+		assertEquals( fork.getText(), OTHER );
+	}
+	
+	@Test
+	public void testCommit() {
+		ITargetClass fork = CopyOnWriteProxy.fork(proxy);
+		fork.setText(OTHER);
+		CopyOnWriteProxy.commit(fork);
+		assertEquals( original.getText(), OTHER );
+		assertEquals( fork.getText(), OTHER );
+		assertEquals( CopyOnWriteProxy.depth(fork), 0 );
+	}
+	
+	@Test
+	public void testLayersHoldOnlyTheirOverrides() {
+		CopyOnWriteProxy.Layer base = new CopyOnWriteProxy.Layer(null, 100, new int[] { 3, 40 }, new Object[] { "a", "b" });
+		CopyOnWriteProxy.Layer top = new CopyOnWriteProxy.Layer(base, 100, new int[] { 40 }, new Object[] { "c" });
+		assertEquals( top.slots.length, 1 );
+		assertEquals( top.lookup(3), "a" );
+		assertEquals( top.lookup(40), "c" );
+		assertSame( top.lookup(7), CopyOnWriteProxy.Layer.UNSET );
+		
+		CopyOnWriteProxy.Layer flat = top.flatten();
+		assertNull( flat.parent );
+		assertEquals( flat.slots.length, 2 );
+		assertEquals( flat.lookup(3), "a" );
+		assertEquals( flat.lookup(40), "c" );
+	}
+}
@@ -0,0 +1,127 @@
+package com.rac.proxy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeadlineProxyTest {
+
+	public interface IBackend {
+		public String fast();
+		public String hang() throws InterruptedException;
+		@DeadlineProxy.Timeout(value = 20)
+		public String hangBriefly() throws InterruptedException;
+		public long remaining();
+		public String fail();
+	}
+	
+	static class Backend implements IBackend {
+		volatile boolean interrupted;
+		
+		public String fast()   { return "fast"; }
+		
+		public String hang() throws InterruptedException {
+			try {
+				Thread.sleep(60000);
+			} catch (InterruptedException e) {
+				interrupted = true;
+				throw e;
+			}
+			return "never";
+		}
+		
+		public String hangBriefly() throws InterruptedException {
+			return hang();
+		}
+		
+		public long remaining()  { return DeadlineProxy.remainingNanos(); }
+		public String fail()     { throw new IllegalStateException("boom"); }
+	}
+	
+	@Test
+	public void testFastCall() {
+		IBackend backend = DeadlineProxy.create(IBackend.class, new Backend(), 1, TimeUnit.SECONDS);
+		assertEquals( backend.fast(), "fast" );
+		assertEquals( DeadlineProxy.stats(backend).getCalls(), 1 );
+	}
+	
+	@Test
+	public void testHungCallIsAbandonedAndInterrupted() throws Exception {
+		Backend target = new Backend();
+		IBackend backend = DeadlineProxy.create(IBackend.class, target, 50, TimeUnit.MILLISECONDS);
+		long started = System.nanoTime();
+		try {
+			backend.hang();
+			fail();
+		} catch (DeadlineProxy.DeadlineExceededException e) {
+			assertTrue( System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5) );
+		}
+		for (int i = 0; i < 500 && target.interrupted == false; i++)
+			Thread.sleep(10);
+		assertTrue( target.interrupted );
+		assertEquals( DeadlineProxy.stats(backend).getExpired(), 1 );
+	}
+	
+	@Test
+	public void testInterruptedCallerInterruptsWorker() throws Exception {
+		Backend target = new Backend();
+		IBackend backend = DeadlineProxy.create(IBackend.class, target, 1, TimeUnit.HOURS);
+		Thread caller = new Thread(() -> {
+			try {
+				backend.hang();
+			} catch (InterruptedException e) {
+			}
+		});
+		caller.start();
+		Thread.sleep(100);
+		caller.interrupt();
+		caller.join(5000);
+		
+		for (int i = 0; i < 500 && target.interrupted == false; i++)
+			Thread.sleep(10);
+		assertTrue( target.interrupted );
+		assertEquals( DeadlineProxy.stats(backend).getExpired(), 0 );
+	}
+	
+	@Test
+	public void testHugeTimeoutsDoNotOverflow() throws Exception {
+		IBackend backend = DeadlineProxy.create(IBackend.class, new Backend(), Long.MAX_VALUE, TimeUnit.DAYS);
+		assertEquals( backend.fast(), "fast" );
+		assertEquals( DeadlineProxy.withDeadline(Long.MAX_VALUE, TimeUnit.NANOSECONDS, () -> backend.remaining()).longValue(), Long.MAX_VALUE );
+		assertEquals( DeadlineProxy.stats(backend).getExpired(), 0 );
+	}
+	
+	@Test(expected = DeadlineProxy.DeadlineExceededException.class)
+	public void testMethodTimeoutOverridesDefault() throws Exception {
+		IBackend backend = DeadlineProxy.create(IBackend.class, new Backend(), 1, TimeUnit.HOURS);
+		backend.hangBriefly();
+	}
+	
+	@Test
+	public void testDeadlineIsPassedDown() throws Exception {
+		IBackend inner = DeadlineProxy.create(IBackend.class, new Backend(), 1, TimeUnit.HOURS);
+		IBackend outer = DeadlineProxy.create(IBackend.class, new Backend() {
+			public long remaining() {
+				return inner.remaining();
+			}
+		}, 1, TimeUnit.HOURS);
+		
+		long remaining = DeadlineProxy.withDeadline(200, TimeUnit.MILLISECONDS, () -> outer.remaining());
+		assertTrue( remaining > 0 );
+		assertTrue( remaining <= TimeUnit.MILLISECONDS.toNanos(200) );
+		assertEquals( DeadlineProxy.remainingNanos(), Long.MAX_VALUE );
+	}
+	
+	@Test(expected = DeadlineProxy.DeadlineExceededException.class)
+	public void testSpentBudgetFailsFast() throws Exception {
+		IBackend backend = DeadlineProxy.create(IBackend.class, new Backend(), 1, TimeUnit.HOURS);
+		DeadlineProxy.withDeadline(0, TimeUnit.MILLISECONDS, () -> backend.fast());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testExceptionsPassThrough() {
+		DeadlineProxy.create(IBackend.class, new Backend(), 1, TimeUnit.SECONDS).fail();
+	}
+}
@@ -0,0 +1,92 @@
+package com.rac.proxy;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderProxyTest {
+
+	static final String TEXT = "doit";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	interface Calls {
+		void run(ITargetClass proxy);
+	}
+	
+	List<RecordedEvent> record(Calls calls, ITargetClass proxy) throws Exception {
+		Path file = folder.newFile("calls.jfr").toPath();
+		try (Recording recording = new Recording()) {
+			recording.enable(FlightRecorderProxy.EVENT_NAME);
+			recording.start();
+			calls.run(proxy);
+			recording.stop();
+			recording.dump(file);
+		}
+		return RecordingFile.readAllEvents(file);
+	}
+	
+	@Test
+	public void testCallsAreRecorded() throws Exception {
+		TargetClass target = new TargetClass(TEXT);
+		ITargetClass proxy = FlightRecorderProxy.create(ITargetClass.class, target);
+		
+		List<RecordedEvent> events = record(p -> p.getText(), proxy);
+		assertEquals( events.size(), 1 );
+		RecordedEvent event = events.get(0);
+		assertEquals( event.getClass("interfaceClass").getName(), ITargetClass.class.getName() );
+		assertEquals( event.getString("method"), "getText" );
+		assertNull( event.getClass("exception") );
+		assertEquals( event.getInt("targetIdentity"), System.identityHashCode(target) );
+	}
+	
+	@Test
+	public void testExceptionIsRecorded() throws Exception {
+		ITargetClass proxy = FlightRecorderProxy.create(ITargetClass.class, new TargetClass(TEXT) {
+			public String getText() {
+				throw new IllegalStateException();
+			}
+		});
+		
+		List<RecordedEvent> events = record(p -> {
+			try {
+				p.getText();
+				fail();
+			} catch (IllegalStateException e) {
+			}
+		}, proxy);
+		assertEquals( events.get(0).getClass("exception").getName(), IllegalStateException.class.getName() );
+	}
+	
+	@Test
+	public void testSampling() throws Exception {
+		ITargetClass sampled = FlightRecorderProxy.create(ITargetClass.class, new TargetClass(TEXT), 0, TimeUnit.NANOSECONDS, 10);
+		int recorded = record(p -> { for (int i = 0; i < 1000; i++) p.getText(); }, sampled).size();
+		
+		// one call in ten, at random, so about a hundred
+		assertTrue( String.valueOf(recorded), recorded > 50 && recorded < 200 );
+	}
+	
+	@Test
+	public void testThreshold() throws Exception {
+		ITargetClass slow = FlightRecorderProxy.create(ITargetClass.class, new TargetClass(TEXT), 1, TimeUnit.HOURS, 1);
+		assertEquals( record(p -> p.getText(), slow).size(), 0 );
+	}
+	
+	@Test
+	public void testNoRecording() {
+		ITargetClass proxy = FlightRecorderProxy.create(ITargetClass.class, new TargetClass(TEXT));
+		assertEquals( proxy.getText(), TEXT );
+	}
+}
@@ -0,0 +1,78 @@
+package com.rac.proxy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HashedTimingWheelTest {
+
+	HashedTimingWheel wheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 8);
+	
+	@After
+	public void stopWheel() {
+		wheel.stop();
+	}
+	
+	@Test
+	public void testTaskRunsAfterDelay() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		long started = System.nanoTime();
+		HashedTimingWheel.Timeout timeout = wheel.schedule(ran::countDown, 30, TimeUnit.MILLISECONDS);
+		
+		assertTrue( ran.await(5, TimeUnit.SECONDS) );
+		assertTrue( System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(30) );
+		assertTrue( timeout.isExpired() );
+		assertFalse( timeout.cancel() );
+	}
+	
+	@Test
+	public void testCancelledTaskNeverRuns() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		HashedTimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+		assertTrue( timeout.cancel() );
+		
+		Thread.sleep(60);
+		assertEquals( runs.get(), 0 );
+		assertTrue( timeout.isCancelled() );
+	}
+	
+	@Test
+	public void testDelaysLongerThanOneTurn() throws Exception {
+		// 8 ticks per turn, so these wrap round the wheel several times
+		CountDownLatch ran = new CountDownLatch(3);
+		for (int delay : new int[] { 3, 25, 50 })
+			wheel.schedule(ran::countDown, delay, TimeUnit.MILLISECONDS);
+		assertTrue( ran.await(5, TimeUnit.SECONDS) );
+	}
+	
+	@Test
+	public void testHugeDelayNeverComesDue() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		HashedTimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, Long.MAX_VALUE, TimeUnit.DAYS);
+		
+		Thread.sleep(60);
+		assertEquals( runs.get(), 0 );
+		assertTrue( timeout.cancel() );
+	}
+	
+	@Test
+	public void testManyTimeouts() throws Exception {
+		CountDownLatch ran = new CountDownLatch(5000);
+		for (int i = 0; i < 10000; i++) {
+			HashedTimingWheel.Timeout timeout = wheel.schedule(ran::countDown, i % 40, TimeUnit.MILLISECONDS);
+			if (i % 2 == 0)
+				timeout.cancel();
+		}
+		assertTrue( ran.await(5, TimeUnit.SECONDS) );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWheelSizeMustBePowerOfTwo() {
+		new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 10);
+	}
+}
@@ -0,0 +1,159 @@
+package com.rac.proxy;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HedgingProxyTest {
+
+	static class Replica implements ITargetClass {
+		volatile String text;
+		final long delayMillis;
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final AtomicInteger writes = new AtomicInteger();
+		
+		Replica(String text, long delayMillis) {
+			this.text = text;
+			this.delayMillis = delayMillis;
+		}
+		
+		public String getText() {
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return text;
+		}
+		
+		public void setText(String text) {
+			writes.incrementAndGet();
+			this.text = text;
+		}
+	}
+	
+	static class FailingReplica extends Replica {
+		FailingReplica() {
+			super(null, 0);
+		}
+		
+		@Override
+		public String getText() {
+			throw new IllegalStateException("down");
+		}
+	}
+	
+	@Test
+	public void testFastPrimaryIsNotHedged() {
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class,
+			Arrays.asList(new Replica("a", 0), new Replica("b", 0)), 500, 100);
+		
+		for (int i = 0; i < 10; i++)
+			proxy.getText();
+		
+		assertEquals( HedgingProxy.stats(proxy).getCalls(), 10 );
+		assertEquals( HedgingProxy.stats(proxy).getHedges(), 0 );
+	}
+	
+	@Test
+	public void testSlowPrimaryIsHedgedAndCancelled() throws Exception {
+		Replica slow = new Replica("slow", 5000);
+		Replica fast = new Replica("fast", 0);
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class, Arrays.asList(slow, fast), 20, 100);
+		
+		long started = System.nanoTime();
+		assertEquals( proxy.getText(), "fast" );
+		assertTrue( System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2) );
+		assertTrue( slow.interrupted.await(5, TimeUnit.SECONDS) );
+		
+		assertEquals( HedgingProxy.stats(proxy).getHedges(), 1 );
+		assertEquals( HedgingProxy.stats(proxy).getHedgesWon(), 1 );
+	}
+	
+	@Test
+	public void testBudgetLimitsHedges() {
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class,
+			Arrays.asList(new Replica("a", 30), new Replica("b", 30)), 1, 0);
+		
+		for (int i = 0; i < 15; i++)
+			proxy.getText();
+		
+		// only the burst allowance is available with a zero budget
+		assertEquals( HedgingProxy.stats(proxy).getHedges(), 10 );
+		assertEquals( HedgingProxy.stats(proxy).getDenied(), 5 );
+	}
+	
+	@Test
+	public void testAdaptiveDelayFollowsLatency() {
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class,
+			Arrays.asList(new Replica("a", 0), new Replica("b", 0)), HedgingProxy.ADAPTIVE, 10);
+		
+		for (int i = 0; i < 64; i++)
+			proxy.getText();
+		
+		assertTrue( HedgingProxy.stats(proxy).getDelayNanos() < TimeUnit.MILLISECONDS.toNanos(10) );
+	}
+	
+	@Test
+	public void testWritesGoOnlyToThePrimary() {
+		Replica a = new Replica("a", 0);
+		Replica b = new Replica("b", 0);
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class, Arrays.asList(a, b), 1, 100);
+		
+		for (int i = 0; i < 3; i++)
+			proxy.setText("x" + i);
+		
+		assertEquals( a.writes.get(), 3 );
+		assertEquals( b.writes.get(), 0 );
+		assertEquals( a.text, "x2" );
+		assertEquals( b.text, "b" );
+		assertEquals( HedgingProxy.stats(proxy).getWrites(), 3 );
+		assertEquals( HedgingProxy.stats(proxy).getCalls(), 0 );
+		assertEquals( HedgingProxy.stats(proxy).getHedges(), 0 );
+	}
+	
+	@Test
+	public void testFailureDoesNotBeatPendingSuccess() {
+		Replica slow = new Replica("slow", 100);
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class, Arrays.asList(slow, new FailingReplica()), 10, 100);
+		
+		// the hedge fails at once, while the primary is still on its way
+		assertEquals( proxy.getText(), "slow" );
+		assertEquals( HedgingProxy.stats(proxy).getHedges(), 1 );
+		assertEquals( HedgingProxy.stats(proxy).getHedgesWon(), 0 );
+	}
+	
+	@Test
+	public void testFailureIsThrownWhenNoAttemptSucceeds() {
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class,
+			Arrays.asList(new FailingReplica(), new FailingReplica()), 500, 100);
+		
+		try {
+			proxy.getText();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( e.getMessage(), "down" );
+		}
+	}
+	
+	@Test
+	public void testAdaptiveSamplesWrapAround() {
+		ITargetClass proxy = HedgingProxy.create(ITargetClass.class,
+			Arrays.asList(new Replica("a", 0), new Replica("b", 0)), HedgingProxy.ADAPTIVE, 10);
+		
+		// several times round the ring of recent latencies
+		for (int i = 0; i < 1000; i++)
+			assertNotNull( proxy.getText() );
+		assertTrue( HedgingProxy.stats(proxy).getDelayNanos() < TimeUnit.MILLISECONDS.toNanos(10) );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNeedsTwoTargets() {
+		HedgingProxy.create(ITargetClass.class, Arrays.asList(new Replica("a", 0)), 10, 10);
+	}
+}
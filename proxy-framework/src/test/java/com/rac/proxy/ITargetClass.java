@@ -1,3 +1,4 @@
+package com.rac.proxy;
 
 interface ITargetClass {
 	public String getText();
@@ -0,0 +1,125 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LazyProxyTest {
+
+	static final String TEXT = "doit";
+	
+	static class CountingSupplier implements Supplier<ITargetClass> {
+		final AtomicInteger built = new AtomicInteger();
+		
+		public ITargetClass get() {
+			built.incrementAndGet();
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new TargetClass(TEXT);
+		}
+	}
+	
+	@Test
+	public void testTargetIsBuiltOnFirstCall() {
+		CountingSupplier supplier = new CountingSupplier();
+		ITargetClass proxy = LazyProxy.create(ITargetClass.class, supplier);
+		assertEquals( supplier.built.get(), 0 );
+		assertFalse( LazyProxy.isInitialized(proxy) );
+		
+		assertEquals( proxy.getText(), TEXT );
+		assertEquals( proxy.getText(), TEXT );
+		assertEquals( supplier.built.get(), 1 );
+		assertTrue( LazyProxy.isInitialized(proxy) );
+	}
+	
+	@Test
+	public void testConcurrentFirstCallsBuildOnce() throws Exception {
+		CountingSupplier supplier = new CountingSupplier();
+		final ITargetClass proxy = LazyProxy.create(ITargetClass.class, supplier);
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		for (int i = 0; i < 8; i++)
+			results.add(threads.submit(() -> { start.await(); return proxy.getText(); }));
+		start.countDown();
+		for (Future<String> result : results)
+			assertEquals( result.get(5, TimeUnit.SECONDS), TEXT );
+		threads.shutdown();
+		
+		assertEquals( supplier.built.get(), 1 );
+	}
+	
+	@Test
+	public void testFailedInitializationIsRetried() {
+		final AtomicInteger attempts = new AtomicInteger();
+		ITargetClass proxy = LazyProxy.create(ITargetClass.class, () -> {
+			if (attempts.incrementAndGet() == 1)
+				throw new IllegalStateException("not yet");
+			return new TargetClass(TEXT);
+		});
+		
+		try {
+			proxy.getText();
+			fail();
+		} catch (IllegalStateException e) {
+			assertFalse( LazyProxy.isInitialized(proxy) );
+		}
+		assertEquals( proxy.getText(), TEXT );
+	}
+	
+	@Test
+	public void testTargetExceptionReachesCaller() {
+		ITargetClass proxy = LazyProxy.create(ITargetClass.class, () -> new TargetClass(TEXT) {
+			@Override
+			public String getText() { throw new IllegalStateException("down"); }
+		});
+		try {
+			proxy.getText();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( e.getMessage(), "down" );
+		}
+	}
+	
+	@Test
+	public void testObjectMethodsDoNotBuildTheTarget() {
+		CountingSupplier supplier = new CountingSupplier();
+		ITargetClass proxy = LazyProxy.create(ITargetClass.class, supplier);
+		
+		int hash = proxy.hashCode();
+		assertTrue( proxy.equals(proxy) );
+		assertFalse( proxy.equals(new TargetClass(TEXT)) );
+		assertEquals( proxy.toString(), "Lazy[uninitialized]" );
+		assertEquals( supplier.built.get(), 0 );
+		
+		proxy.getText();
+		assertEquals( proxy.hashCode(), hash );
+	}
+	
+	@Test
+	public void testPrewarm() throws Exception {
+		CountingSupplier supplier = new CountingSupplier();
+		ITargetClass proxy = LazyProxy.create(ITargetClass.class, supplier);
+		LazyProxy.prewarm(proxy);
+		for (int i = 0; i < 500 && LazyProxy.isInitialized(proxy) == false; i++)
+			Thread.sleep(10);
+		
+		assertTrue( LazyProxy.isInitialized(proxy) );
+		assertEquals( proxy.getText(), TEXT );
+		assertEquals( supplier.built.get(), 1 );
+	}
+}
@@ -0,0 +1,64 @@
+package com.rac.proxy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MixinProxyTest {
+
+	static final String TEXT = "doit";
+	
+	interface ICounter {
+		public int next();
+		public String getText();
+	}
+	
+	static class Counter implements ICounter {
+		private int count;
+		public int next()        { return ++count; }
+		public String getText()  { return "counter"; }
+	}
+	
+	@Test
+	public void testRoutesToEachDelegate() {
+		TargetClass target = new TargetClass(TEXT);
+		Object mixin = MixinProxy.builder()
+			.with(ITargetClass.class, target)
+			.with(ICounter.class, new Counter())
+			.build();
+		
+		((ITargetClass)mixin).setText("Texas");
+		assertEquals( target.getText(), "Texas" );
+		assertEquals( ((ICounter)mixin).next(), 1 );
+		assertEquals( ((ICounter)mixin).next(), 2 );
+	}
+	
+	@Test
+	public void testFirstDelegateWinsSharedMethods() {
+		Object mixin = MixinProxy.builder()
+			.with(ITargetClass.class, new TargetClass(TEXT))
+			.with(ICounter.class, new Counter())
+			.build();
+		
+		assertEquals( ((ICounter)mixin).getText(), TEXT );
+		assertEquals( ((ITargetClass)mixin).getText(), TEXT );
+	}
+	
+	@Test
+	public void testObjectMethodsAreIdentityBased() {
+		ITargetClass first = MixinProxy.builder().with(ITargetClass.class, new TargetClass(TEXT)).build(ITargetClass.class);
+		ITargetClass second = MixinProxy.builder().with(ITargetClass.class, new TargetClass(TEXT)).build(ITargetClass.class);
+		
+		assertTrue( first.equals(first) );
+		assertFalse( first.equals(second) );
+		assertEquals( first.hashCode(), System.identityHashCode(first) );
+		assertEquals( first.toString(), "Mixin[ITargetClass=" + TEXT + "]" );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInterfaceCannotBeMixedInTwice() {
+		MixinProxy.builder()
+			.with(ITargetClass.class, new TargetClass(TEXT))
+			.with(ITargetClass.class, new TargetClass(TEXT));
+	}
+}
@@ -0,0 +1,114 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PoolingProxyTest {
+
+	interface IParser {
+		public int parse(String text);
+	}
+	
+	/**
+	 * Parser fails loudly if two threads ever use it at the same time.
+	 */
+	static class Parser implements IParser {
+		private final AtomicInteger users = new AtomicInteger();
+		boolean broken;
+		
+		public int parse(String text) {
+			if (users.incrementAndGet() != 1)
+				throw new IllegalStateException("shared between threads");
+			try {
+				Thread.yield();
+				return Integer.parseInt(text);
+			} finally {
+				users.decrementAndGet();
+			}
+		}
+	}
+	
+	@Test
+	public void testTargetsAreNeverShared() throws Exception {
+		final IParser parser = PoolingProxy.create(IParser.class, Parser::new, 1, 4);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 8; i++) {
+			results.add(threads.submit(() -> {
+				int sum = 0;
+				for (int n = 0; n < 1000; n++)
+					sum += parser.parse("1");
+				return sum;
+			}));
+		}
+		for (Future<Integer> result : results)
+			assertEquals( (int)result.get(30, TimeUnit.SECONDS), 1000 );
+		threads.shutdown();
+		
+		PoolingProxy.Stats stats = PoolingProxy.stats(parser);
+		assertEquals( stats.getBorrows(), 8000 );
+		assertTrue( stats.getSize() <= 4 );
+		assertTrue( stats.getCreated() <= 4 );
+	}
+	
+	@Test
+	public void testTargetExceptionReachesCallerAndTargetIsReturned() {
+		IParser parser = PoolingProxy.create(IParser.class, Parser::new, 0, 1);
+		try {
+			parser.parse("x");
+			fail();
+		} catch (NumberFormatException e) {
+		}
+		assertEquals( parser.parse("3"), 3 );
+		
+		PoolingProxy.Stats stats = PoolingProxy.stats(parser);
+		assertEquals( stats.getCreated(), 1 );
+		assertEquals( stats.getSize(), 1 );
+	}
+	
+	@Test
+	public void testMinimumIsCreatedUpFront() {
+		AtomicInteger built = new AtomicInteger();
+		IParser parser = PoolingProxy.create(IParser.class, () -> { built.incrementAndGet(); return new Parser(); }, 3, 8);
+		assertEquals( built.get(), 3 );
+		assertEquals( parser.parse("42"), 42 );
+		assertEquals( built.get(), 3 );
+	}
+	
+	@Test
+	public void testInvalidTargetsAreReplaced() {
+		IParser parser = PoolingProxy.create(IParser.class, Parser::new,
+			p -> ((Parser)p).broken == false,
+			p -> ((Parser)p).broken = true,
+			1, 1);
+		assertEquals( parser.parse("1"), 1 );
+		assertEquals( parser.parse("2"), 2 );
+		
+		PoolingProxy.Stats stats = PoolingProxy.stats(parser);
+		assertEquals( stats.getDiscarded(), 1 );
+		assertEquals( stats.getCreated(), 2 );
+	}
+	
+	@Test
+	public void testValidatorThatAlwaysRejectsGivesUp() {
+		IParser parser = PoolingProxy.create(IParser.class, Parser::new, p -> false, null, 0, 2);
+		try {
+			parser.parse("1");
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		
+		PoolingProxy.Stats stats = PoolingProxy.stats(parser);
+		assertEquals( stats.getCreated(), 3 );
+		assertEquals( stats.getSize(), 0 );
+	}
+}
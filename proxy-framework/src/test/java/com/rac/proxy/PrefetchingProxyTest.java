@@ -0,0 +1,123 @@
+package com.rac.proxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PrefetchingProxyTest {
+
+	public interface IProfile {
+		public String getName();
+		public void setName(String name);
+		public String getAddress();
+		public String getPhone();
+		public String lookup(String key);
+	}
+	
+	static class Backend implements IProfile {
+		final AtomicInteger calls = new AtomicInteger();
+		final AtomicInteger lookups = new AtomicInteger();
+		volatile String name = "ann";
+		
+		String slow(String value) {
+			calls.incrementAndGet();
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return value;
+		}
+		
+		public String getName()            { return slow(name); }
+		public void setName(String name)   { this.name = name; }
+		public String getAddress()         { return slow("main st"); }
+		public String getPhone()           { return slow("555"); }
+		public String lookup(String key)   { lookups.incrementAndGet(); return slow(key); }
+	}
+	
+	@Test
+	public void testLearnedSuccessorsArePrefetched() {
+		Backend backend = new Backend();
+		IProfile profile = PrefetchingProxy.create(IProfile.class, backend, 0.8, 4, 5000);
+		
+		for (int i = 0; i < 50; i++) {
+			assertEquals( profile.getName(), "ann" );
+			assertEquals( profile.getAddress(), "main st" );
+			assertEquals( profile.getPhone(), "555" );
+		}
+		
+		PrefetchingProxy.Stats stats = PrefetchingProxy.stats(profile);
+		assertEquals( stats.getCalls(), 150 );
+		assertTrue( stats.toString(), stats.getHits() > 100 );
+		assertTrue( stats.getHitRate() > 0.9 );
+	}
+	
+	@Test
+	public void testUnpredictableCallsAreNotPrefetched() {
+		Backend backend = new Backend();
+		IProfile profile = PrefetchingProxy.create(IProfile.class, backend, 0.8, 4, 5000);
+		
+		// every method is followed by each of two others half of the time
+		for (int i = 0; i < 10; i++) {
+			profile.getName();
+			profile.getAddress();
+			profile.getPhone();
+			profile.getAddress();
+			profile.getName();
+			profile.getPhone();
+		}
+		
+		assertEquals( PrefetchingProxy.stats(profile).getPrefetches(), 0 );
+		assertEquals( backend.calls.get(), 60 );
+	}
+	
+	@Test
+	public void testExpiredPrefetchIsWasted() throws Exception {
+		Backend backend = new Backend();
+		IProfile profile = PrefetchingProxy.create(IProfile.class, backend, 0.5, 4, 20);
+		
+		for (int i = 0; i < 10; i++) {
+			profile.getName();
+			profile.getAddress();
+		}
+		profile.getName();
+		Thread.sleep(50);
+		profile.getAddress();
+		
+		assertTrue( PrefetchingProxy.stats(profile).getWasted() >= 1 );
+	}
+	
+	@Test
+	public void testMethodsWithArgumentsAreNeverPrefetched() {
+		Backend backend = new Backend();
+		IProfile profile = PrefetchingProxy.create(IProfile.class, backend, 0.5, 4, 5000);
+		
+		for (int i = 0; i < 20; i++) {
+			profile.getName();
+			assertEquals( profile.lookup("k" + i), "k" + i );
+		}
+		assertEquals( backend.lookups.get(), 20 );
+	}
+	
+	@Test
+	public void testWriteDiscardsPrefetchedReads() throws Exception {
+		Backend backend = new Backend();
+		IProfile profile = PrefetchingProxy.create(IProfile.class, backend, 0.8, 4, 5000);
+		
+		for (int i = 0; i < 20; i++) {
+			profile.getAddress();
+			profile.getName();
+		}
+		
+		// getName is now prefetched, and finished, before it is changed
+		profile.getAddress();
+		Thread.sleep(50);
+		profile.setName("bob");
+		assertEquals( profile.getName(), "bob" );
+		assertEquals( backend.name, "bob" );
+		assertTrue( PrefetchingProxy.stats(profile).getWasted() >= 1 );
+	}
+}
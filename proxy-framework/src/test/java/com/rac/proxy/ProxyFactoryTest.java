@@ -0,0 +1,124 @@
+package com.rac.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProxyFactoryTest {
+
+	static final String TEXT = "doit";
+	
+	@Test
+	public void testNewInstance() {
+		ProxyFactory<ITargetClass> factory = ProxyFactory.of(ITargetClass.class);
+		ITargetClass proxy = factory.newInstance(new AbstractProxy(new TargetClass(TEXT)));
+		assertEquals( proxy.getText(), TEXT );
+		assertTrue( Proxy.isProxyClass(proxy.getClass()) );
+		assertSame( proxy.getClass(), factory.proxyClass() );
+	}
+	
+	@Test
+	public void testFactoriesAreCached() {
+		assertSame( ProxyFactory.of(ITargetClass.class), ProxyFactory.of(ITargetClass.class) );
+		assertSame( ProxyFactory.of(ITargetClass.class).proxyClass(),
+			AbstractProxy.create(ITargetClass.class, new AbstractProxy(new TargetClass(TEXT))).getClass() );
+	}
+	
+	@Test
+	public void testBootstrapInterface() {
+		final boolean[] ran = new boolean[1];
+		Runnable proxy = ProxyFactory.of(Runnable.class).newInstance((p, method, args) -> ran[0] = true);
+		proxy.run();
+		assertTrue( ran[0] );
+		assertSame( ProxyFactory.of(Runnable.class), ProxyFactory.of(Runnable.class, null) );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotAnInterface() {
+		ProxyFactory.of(TargetClass.class);
+	}
+	
+	@Test
+	public void testForeignLoadersAreNotCached() {
+		ClassLoader foreign = new ClassLoader(ProxyFactoryTest.class.getClassLoader()) {};
+		ProxyFactory<Runnable> factory = ProxyFactory.of(Runnable.class, foreign);
+		assertNotSame( factory, ProxyFactory.of(Runnable.class, foreign) );
+		assertSame( factory.proxyClass().getClassLoader(), foreign );
+	}
+	
+	@Test
+	public void testRedeployedLoaderIsNotRetained() throws Exception {
+		WeakReference<ClassLoader> webapp = deployAndUse();
+		for (int i = 0; i < 20 && webapp.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertNull( webapp.get() );
+	}
+	
+	/**
+	 * Task stands in for a webapp's class, implementing an interface from a
+	 * shared parent loader.
+	 */
+	public static class Task implements Callable<String> {
+		public String call() { return TEXT; }
+	}
+	
+	/**
+	 * Proxies a target whose class comes from a loader of its own, as a webapp's
+	 * would, and lets go of everything but a weak reference to that loader.
+	 */
+	private static WeakReference<ClassLoader> deployAndUse() throws Exception {
+		ClassLoader loader = new ChildFirstLoader(Task.class.getName());
+		Constructor<?> constructor = loader.loadClass(Task.class.getName()).getConstructor();
+		Object target = constructor.newInstance();
+		
+		Callable<?> proxy = AbstractProxy.create(Callable.class, new AbstractProxy(target));
+		assertEquals( proxy.call(), TEXT );
+		assertSame( proxy.getClass().getClassLoader(), loader );
+		assertSame( ProxyFactory.forTarget(Callable.class, target.getClass()).proxyClass(), proxy.getClass() );
+		return new WeakReference<ClassLoader>(loader);
+	}
+	
+	/**
+	 * ChildFirstLoader defines one class itself, from its parent's bytes, and
+	 * leaves every other class to its parent.
+	 */
+	static class ChildFirstLoader extends ClassLoader {
+		
+		private final String name;
+		
+		ChildFirstLoader(String name) {
+			super(ChildFirstLoader.class.getClassLoader());
+			this.name = name;
+		}
+		
+		@Override
+		protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+			if (className.equals(name) == false)
+				return super.loadClass(className, resolve);
+			synchronized (getClassLoadingLock(className)) {
+				Class<?> loaded = findLoadedClass(className);
+				if (loaded != null)
+					return loaded;
+				try (InputStream in = getParent().getResourceAsStream(className.replace('.', '/') + ".class")) {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buffer = new byte[4096];
+					for (int n; (n = in.read(buffer)) > 0;)
+						bytes.write(buffer, 0, n);
+					return defineClass(className, bytes.toByteArray(), 0, bytes.size());
+				} catch (IOException e) {
+					throw new ClassNotFoundException(className, e);
+				}
+			}
+		}
+	}
+}
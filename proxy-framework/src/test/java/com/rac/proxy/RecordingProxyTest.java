@@ -0,0 +1,88 @@
+package com.rac.proxy;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class RecordingProxyTest {
+
+	interface ICalculator {
+		public int add(int a, int b);
+		public String greet(String name);
+		public long scale(long value, double factor);
+	}
+	
+	static class Calculator implements ICalculator {
+		public int add(int a, int b)                  { return a + b; }
+		public String greet(String name)              { return "hello " + name; }
+		public long scale(long value, double factor)  { return (long)(value * factor); }
+	}
+	
+	static class BrokenCalculator extends Calculator {
+		public int add(int a, int b)                  { return a - b; }
+	}
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	File record(int segmentSize) throws Exception {
+		File directory = folder.newFolder();
+		try (InvocationLog log = new InvocationLog(directory, segmentSize)) {
+			ICalculator calculator = RecordingProxy.create(ICalculator.class, new Calculator(), log);
+			for (int i = 0; i < 10; i++) {
+				assertEquals( calculator.add(i, 1), i + 1 );
+				assertEquals( calculator.greet("Jim" + i), "hello Jim" + i );
+				assertEquals( calculator.scale(i, 2.5), (long)(i * 2.5) );
+			}
+			assertEquals( RecordingProxy.dropped(calculator), 0 );
+		}
+		return directory;
+	}
+	
+	@Test
+	public void testReplayMatchesRecording() throws Exception {
+		File directory = record(InvocationLog.DEFAULT_SEGMENT_SIZE);
+		RecordingProxy.Report report = RecordingProxy.replay(directory, ICalculator.class, new Calculator(), false);
+		assertEquals( report.getCalls(), 30 );
+		assertEquals( report.getMismatches(), 0 );
+		assertTrue( report.getCallsPerSecond() > 0 );
+	}
+	
+	@Test
+	public void testReplayDetectsChangedResults() throws Exception {
+		File directory = record(InvocationLog.DEFAULT_SEGMENT_SIZE);
+		RecordingProxy.Report report = RecordingProxy.replay(directory, ICalculator.class, new BrokenCalculator(), false);
+		assertEquals( report.getCalls(), 30 );
+		assertEquals( report.getMismatches(), 10 );
+	}
+	
+	@Test
+	public void testTargetExceptionReachesCaller() throws Exception {
+		try (InvocationLog log = new InvocationLog(folder.newFolder(), InvocationLog.DEFAULT_SEGMENT_SIZE)) {
+			ICalculator calculator = RecordingProxy.create(ICalculator.class, new Calculator() {
+				@Override
+				public String greet(String name) { throw new IllegalStateException("down"); }
+			}, log);
+			try {
+				calculator.greet("Jim");
+				fail();
+			} catch (IllegalStateException e) {
+				assertEquals( e.getMessage(), "down" );
+			}
+		}
+	}
+	
+	@Test
+	public void testSegmentsRoll() throws Exception {
+		File directory = record(256);
+		assertTrue( InvocationLog.segmentsOf(directory).size() > 1 );
+		
+		RecordingProxy.Report report = RecordingProxy.replay(directory, ICalculator.class, new Calculator(), true);
+		assertEquals( report.getCalls(), 30 );
+		assertEquals( report.getMismatches(), 0 );
+	}
+}
@@ -0,0 +1,126 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ShardingProxyTest {
+
+	interface ICache {
+		public String get(String key);
+		public void put(String key, String value);
+		public int size();
+		public void clear();
+		public String describe(int verbosity, String key);
+	}
+	
+	static class Cache implements ICache {
+		final Map<String,String> entries = new ConcurrentHashMap<String,String>();
+		
+		public synchronized String get(String key)              { return entries.get(key); }
+		public synchronized void put(String key, String value)  { entries.put(key, value); }
+		public synchronized int size()                          { return entries.size(); }
+		public synchronized void clear()                        { entries.clear(); }
+		public String describe(int verbosity, String key)       { return key + "@" + System.identityHashCode(this); }
+	}
+	
+	static List<Cache> shards(int count) {
+		List<Cache> shards = new ArrayList<Cache>();
+		for (int i = 0; i < count; i++)
+			shards.add(new Cache());
+		return shards;
+	}
+	
+	static ICache sharded(List<Cache> shards) {
+		return ShardingProxy.builder(ICache.class, shards)
+			.key("get", 0)
+			.key("put", 0)
+			.key("describe", 1)
+			.reduce("size", (Integer a, Integer b) -> a + b)
+			.build();
+	}
+	
+	@Test
+	public void testKeysAreSpreadAndStable() {
+		List<Cache> shards = shards(4);
+		ICache cache = sharded(shards);
+		for (int i = 0; i < 1000; i++)
+			cache.put("k" + i, "v" + i);
+		
+		for (int i = 0; i < 1000; i++)
+			assertEquals( cache.get("k" + i), "v" + i );
+		for (Cache shard : shards)
+			assertTrue( shard.size() > 100 );
+		assertEquals( cache.describe(0, "k1"), cache.describe(1, "k1") );
+	}
+	
+	@Test
+	public void testBroadcastAndReduce() {
+		List<Cache> shards = shards(3);
+		ICache cache = sharded(shards);
+		for (int i = 0; i < 30; i++)
+			cache.put("k" + i, "v");
+		
+		assertEquals( cache.size(), 30 );
+		cache.clear();
+		assertEquals( cache.size(), 0 );
+	}
+	
+	@Test
+	public void testObjectMethods() {
+		ICache cache = sharded(shards(2));
+		assertEquals( cache.toString(), "Sharded[2 shards]" );
+		assertTrue( cache.equals(cache) );
+		assertFalse( cache.equals(sharded(shards(2))) );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBroadcastNeedsReducer() {
+		ShardingProxy.builder(ICache.class, shards(2))
+			.key("get", 0).key("put", 0).key("describe", 1)
+			.build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMethodsWithArgumentsNeedRoutes() {
+		ShardingProxy.builder(ICache.class, shards(2))
+			.key("get", 0).key("describe", 1)
+			.reduce("size", (Integer a, Integer b) -> a + b)
+			.build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownNameIsRejected() {
+		ShardingProxy.builder(ICache.class, shards(2))
+			.key("get", 0).key("put", 0).key("describe", 1).key("gte", 0)
+			.reduce("size", (Integer a, Integer b) -> a + b)
+			.build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testArgumentIndexIsChecked() {
+		ShardingProxy.builder(ICache.class, shards(2))
+			.key("get", 1).key("put", 0).key("describe", 1)
+			.reduce("size", (Integer a, Integer b) -> a + b)
+			.build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBroadcastNeedsVoid() {
+		ShardingProxy.builder(ICache.class, shards(2))
+			.key("get", 0).key("put", 0).key("describe", 1)
+			.broadcast("size")
+			.build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testRouteOnce() {
+		ShardingProxy.builder(ICache.class, Arrays.asList(new Cache())).key("get", 0).broadcast("get");
+	}
+}
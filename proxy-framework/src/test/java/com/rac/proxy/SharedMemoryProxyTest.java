@@ -0,0 +1,231 @@
+package com.rac.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryProxyTest {
+
+	public interface ICalculator {
+		public long add(long a, int b);
+		public String greet(String name);
+		public boolean check(double value);
+		public void fail(String message);
+	}
+	
+	public static class Calculator implements ICalculator {
+		public long add(long a, int b)       { return a + b; }
+		public String greet(String name)     { return "hello " + name; }
+		public boolean check(double value)   { return value > 0; }
+		public void fail(String message)     { throw new IllegalArgumentException(message); }
+	}
+	
+	/**
+	 * Serves a calculator on the file given as the argument until stdin closes.
+	 */
+	public static class ServerMain {
+		public static void main(String[] args) throws IOException {
+			SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), new File(args[0]));
+			try {
+				while (System.in.read() >= 0)
+					;
+			} finally {
+				server.close();
+			}
+		}
+	}
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	static void exercise(ICalculator calculator) {
+		assertEquals( calculator.add(40, 2), 42 );
+		assertEquals( calculator.greet("Austin"), "hello Austin" );
+		assertTrue( calculator.check(1.5) );
+		try {
+			calculator.fail("bad");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals( e.getMessage(), "bad" );
+		}
+		long total = 0;
+		for (int i = 0; i < 10000; i++)
+			total = calculator.add(total, 1);
+		assertEquals( total, 10000 );
+	}
+	
+	@Test
+	public void testInProcess() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), file, 256, 4);
+		try {
+			exercise(SharedMemoryProxy.connect(ICalculator.class, file));
+		} finally {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void testSecondClientIsRejected() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), file);
+		try {
+			ICalculator calculator = SharedMemoryProxy.connect(ICalculator.class, file);
+			try {
+				SharedMemoryProxy.connect(ICalculator.class, file);
+				fail();
+			} catch (IOException e) {
+			}
+			assertEquals( calculator.add(1, 2), 3 );
+		} finally {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void testServerSurvivesMalformedRequest() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), file, 64, 4);
+		try {
+			// a request for a method the server does not have
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				SharedMemoryProxy.Ring requests = SharedMemoryProxy.Ring.requests(
+					channel.map(FileChannel.MapMode.READ_WRITE, 0, file.length()));
+				requests.claim(Long.MAX_VALUE).putLong(99).putInt(12345).put((byte)0);
+				requests.publish();
+			}
+			
+			ICalculator calculator = SharedMemoryProxy.connect(ICalculator.class, file);
+			assertEquals( calculator.add(1, 2), 3 );
+		} finally {
+			server.close();
+		}
+	}
+	
+	/**
+	 * Writes a call to add(a, b) straight into the request ring, as a client
+	 * that then dies without reading the reply would.
+	 */
+	static void abandonedCall(SharedMemoryProxy.Ring requests, long call, int a, int b) throws Exception {
+		int id = Arrays.asList(InvocationLog.methodsOf(ICalculator.class)).indexOf(ICalculator.class.getMethod("add", long.class, int.class));
+		ByteBuffer request = requests.claim(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+		request.putLong(call).putInt(id).put((byte)2);
+		InvocationLog.writeValue(request, (long)a);
+		InvocationLog.writeValue(request, b);
+		requests.publish();
+	}
+	
+	static SharedMemoryProxy.Ring requestRing(FileChannel channel, File file) throws IOException {
+		return SharedMemoryProxy.Ring.requests(channel.map(FileChannel.MapMode.READ_WRITE, 0, file.length()));
+	}
+	
+	@Test
+	public void testStaleReplyIsNotTakenByNextClient() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator() {
+			@Override
+			public long add(long a, int b) {
+				if (a == 100) {
+					// answer only once the next client is waiting
+					try {
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.add(a, b);
+			}
+		}, file);
+		try {
+			// the first call of a client that died, numbered as the next client's first call once was
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				abandonedCall(requestRing(channel, file), 1, 100, 100);
+			}
+			
+			ICalculator calculator = SharedMemoryProxy.connect(ICalculator.class, file);
+			assertEquals( calculator.add(1, 2), 3 );
+		} finally {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void testServerDropsRepliesWhenNoClientIsLeft() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), file, 64, 2);
+		try {
+			// more calls than both rings hold, and nobody to read the replies
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				SharedMemoryProxy.Ring requests = requestRing(channel, file);
+				for (int i = 1; i <= 8; i++)
+					abandonedCall(requests, i, i, i);
+			}
+			
+			ICalculator calculator = SharedMemoryProxy.connect(ICalculator.class, file, 5000);
+			assertEquals( calculator.add(1, 2), 3 );
+		} finally {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void testServerSurvivesReplyThatDoesNotFit() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), file, 64, 4);
+		try {
+			ICalculator calculator = SharedMemoryProxy.connect(ICalculator.class, file);
+			try {
+				calculator.greet("0123456789");
+				fail();
+			} catch (IllegalStateException e) {
+			}
+			assertEquals( calculator.add(1, 2), 3 );
+		} finally {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void testAcrossProcesses() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process server = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ServerMain.class.getName(), file.getPath())
+			.redirectErrorStream(true)
+			.start();
+		try {
+			exercise(SharedMemoryProxy.connect(ICalculator.class, file, 30000));
+		} finally {
+			server.getOutputStream().close();
+			if (server.waitFor(10, TimeUnit.SECONDS) == false)
+				server.destroyForcibly();
+		}
+	}
+	
+	@Test
+	public void testTimeoutWithoutServer() throws Exception {
+		File file = new File(folder.getRoot(), "calls.shm");
+		SharedMemoryProxy.Server server = SharedMemoryProxy.serve(ICalculator.class, new Calculator(), file);
+		server.close();
+		ICalculator calculator = SharedMemoryProxy.connect(ICalculator.class, file, 100);
+		try {
+			calculator.greet("nobody");
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testOnlyTransferableTypes() throws Exception {
+		SharedMemoryProxy.connect(Comparable.class, new File(folder.getRoot(), "calls.shm"));
+	}
+}
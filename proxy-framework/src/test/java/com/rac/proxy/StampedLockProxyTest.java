@@ -0,0 +1,137 @@
+package com.rac.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StampedLockProxyTest {
+
+	static final String TEXT = "doit";
+	
+	interface ICounter {
+		public long getLow();
+		public long getHigh();
+		@StampedLockProxy.Read
+		public long spread();
+		public void increment();
+		@StampedLockProxy.Write
+		public long getAndReset();
+	}
+	
+	/**
+	 * Counter yields between its two updates, so unguarded increments from
+	 * several threads would lose counts.
+	 */
+	static class Counter implements ICounter {
+		private long low, high;
+		final AtomicInteger torn = new AtomicInteger();
+		
+		public long getLow()  { return low; }
+		public long getHigh() { return high; }
+		
+		public long spread() {
+			long l = low;
+			Thread.yield();
+			long spread = high - l;
+			if (spread != 0)
+				torn.incrementAndGet();
+			return spread;
+		}
+		
+		public void increment() {
+			low++;
+			Thread.yield();
+			high++;
+		}
+		
+		public long getAndReset() {
+			long value = low;
+			low = high = 0;
+			return value;
+		}
+	}
+	
+	@Test
+	public void testInvocation() {
+		ITargetClass proxy = StampedLockProxy.create(ITargetClass.class, new TargetClass(TEXT));
+		assertEquals( proxy.getText(), TEXT );
+		proxy.setText("Texas");
+		assertEquals( proxy.getText(), "Texas" );
+		assertEquals( proxy.toString(), "Texas" );
+	}
+	
+	@Test
+	public void testTargetExceptionReachesCaller() {
+		ITargetClass proxy = StampedLockProxy.create(ITargetClass.class, new TargetClass(TEXT) {
+			@Override
+			public String getText() { throw new IllegalStateException("read"); }
+			
+			@Override
+			public void setText(String text) { throw new IllegalStateException("write"); }
+		});
+		try {
+			proxy.getText();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( e.getMessage(), "read" );
+		}
+		try {
+			proxy.setText("x");
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( e.getMessage(), "write" );
+		}
+	}
+	
+	@Test
+	public void testWritesAreAtomic() throws Exception {
+		final ICounter counter = StampedLockProxy.create(ICounter.class, new Counter());
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		List<Future<?>> writers = new ArrayList<Future<?>>();
+		for (int i = 0; i < 4; i++) {
+			writers.add(threads.submit(() -> {
+				for (int n = 0; n < 10000; n++)
+					counter.increment();
+			}));
+		}
+		for (Future<?> writer : writers)
+			writer.get(30, TimeUnit.SECONDS);
+		threads.shutdown();
+		
+		assertEquals( counter.getLow(), 40000 );
+		assertEquals( counter.getHigh(), 40000 );
+		assertEquals( counter.getAndReset(), 40000 );
+		assertEquals( counter.getLow(), 0 );
+	}
+	
+	@Test
+	public void testTornOptimisticReadIsRetried() throws Exception {
+		Counter target = new Counter();
+		final ICounter counter = StampedLockProxy.create(ICounter.class, target);
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread writer = new Thread(() -> {
+			while (done.get() == false)
+				counter.increment();
+		});
+		writer.start();
+		try {
+			// keep reading until the target has been caught between two updates
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (target.torn.get() < 10 && System.nanoTime() < deadline)
+				assertEquals( counter.spread(), 0 );
+		} finally {
+			done.set(true);
+			writer.join();
+		}
+		assertTrue( target.torn.get() > 0 );
+	}
+}
@@ -0,0 +1,156 @@
+package com.rac.proxy;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StructViewTest {
+
+	public interface IPoint {
+		int getX();
+		void setX(int x);
+		double getWeight();
+		void setWeight(double weight);
+		boolean isVisible();
+		void setVisible(boolean visible);
+		@StructView.Length(8)
+		String getLabel();
+		void setLabel(String label);
+	}
+	
+	public interface ILabels {
+		@StructView.Length(5)
+		String getFirst();
+		void setFirst(String first);
+		@StructView.Length(5)
+		String getSecond();
+		void setSecond(String second);
+		short getCount();
+		void setCount(short count);
+	}
+	
+	public interface IHuge {
+		@StructView.Length(0x10000)
+		String getText();
+		void setText(String text);
+	}
+	
+	@Test
+	public void testLayout() {
+		// 8 (weight) + 4 (x) + 2 + 8 (label) + 1 (visible), rounded up to 8
+		assertEquals( StructView.recordSize(IPoint.class), 24 );
+	}
+	
+	@Test
+	public void testOddLengthStringsKeepAlignment() {
+		StructView.Layout layout = new StructView.Layout(ILabels.class);
+		for (int offset : layout.offsets)
+			assertEquals( offset % 2, 0 );
+		assertEquals( layout.recordSize, 2 + 8 + 8 );
+		
+		ILabels labels = StructView.allocate(ILabels.class, 1).get(0);
+		labels.setFirst("abcde");
+		labels.setSecond("vwxyz");
+		labels.setCount((short)7);
+		assertEquals( labels.getFirst(), "abcde" );
+		assertEquals( labels.getSecond(), "vwxyz" );
+		assertEquals( labels.getCount(), 7 );
+	}
+	
+	@Test
+	public void testReadWrite() {
+		StructView<IPoint> points = StructView.allocate(IPoint.class, 3);
+		IPoint point = points.get(1);
+		point.setX(7);
+		point.setWeight(2.5);
+		point.setVisible(true);
+		point.setLabel("north");
+		
+		IPoint same = points.get(1);
+		assertEquals( same.getX(), 7 );
+		assertEquals( same.getWeight(), 2.5, 0 );
+		assertTrue( same.isVisible() );
+		assertEquals( same.getLabel(), "north" );
+		
+		IPoint other = points.get(0);
+		assertEquals( other.getX(), 0 );
+		assertEquals( other.getLabel(), "" );
+	}
+	
+	@Test
+	public void testCursorVisitsEveryRecord() {
+		StructView<IPoint> points = StructView.allocate(IPoint.class, 1000);
+		StructView.Cursor<IPoint> cursor = points.cursor();
+		while (cursor.next())
+			cursor.get().setX(cursor.index() * 2);
+		
+		long sum = 0;
+		cursor = points.cursor();
+		while (cursor.next())
+			sum += cursor.get().getX();
+		assertEquals( sum, 999 * 1000 );
+		
+		assertFalse( cursor.next() );
+		assertEquals( cursor.moveTo(10).get().getX(), 20 );
+	}
+	
+	@Test
+	public void testWrapSharesBuffer() {
+		StructView<IPoint> points = StructView.allocate(IPoint.class, 2);
+		points.get(1).setLabel("east");
+		
+		StructView<IPoint> again = StructView.wrap(IPoint.class, points.buffer());
+		assertEquals( again.size(), 2 );
+		assertEquals( again.get(1).getLabel(), "east" );
+		
+		ByteBuffer heap = ByteBuffer.allocate(StructView.recordSize(IPoint.class) * 4 + 5);
+		assertEquals( StructView.wrap(IPoint.class, heap).size(), 4 );
+	}
+	
+	@Test
+	public void testWrapUsesRemainingBytes() {
+		int recordSize = StructView.recordSize(IPoint.class);
+		StructView<IPoint> points = StructView.allocate(IPoint.class, 4);
+		points.get(1).setX(11);
+		points.get(2).setX(12);
+		
+		ByteBuffer middle = points.buffer();
+		middle.position(recordSize).limit(3 * recordSize);
+		StructView<IPoint> view = StructView.wrap(IPoint.class, middle);
+		assertEquals( view.size(), 2 );
+		assertEquals( view.get(0).getX(), 11 );
+		assertEquals( view.get(1).getX(), 12 );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testStringTooLong() {
+		StructView.allocate(IPoint.class, 1).get(0).setLabel("far too long");
+	}
+	
+	@Test
+	public void testNullStringSurvives() {
+		IPoint point = StructView.allocate(IPoint.class, 1).get(0);
+		assertEquals( point.getLabel(), "" );
+		point.setLabel(null);
+		assertNull( point.getLabel() );
+		point.setLabel("");
+		assertEquals( point.getLabel(), "" );
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testLengthMustFitItsPrefix() {
+		StructView.allocate(IHuge.class, 1);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testCursorBeforeFirstRecord() {
+		StructView.allocate(IPoint.class, 1).cursor().get().getX();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testStringNeedsLength() {
+		StructView.allocate(ITargetClass.class, 1);
+	}
+}
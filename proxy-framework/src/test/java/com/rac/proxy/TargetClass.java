@@ -1,3 +1,4 @@
+package com.rac.proxy;
 
 class TargetClass implements ITargetClass {
 	
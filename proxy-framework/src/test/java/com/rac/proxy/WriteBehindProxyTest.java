@@ -0,0 +1,121 @@
+package com.rac.proxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindProxyTest {
+
+	static final String TEXT = "doit";
+	static final String OTHER = "Texas";
+	
+	static class SlowTarget extends TargetClass {
+		final AtomicInteger writes = new AtomicInteger();
+		
+		SlowTarget() {
+			super(TEXT);
+		}
+		
+		public void setText(String text) {
+			writes.incrementAndGet();
+			super.setText(text);
+		}
+	}
+	
+	static void await(SlowTarget target, String text) throws InterruptedException {
+		for (int i = 0; i < 500 && text.equals(target.getText()) == false; i++)
+			Thread.sleep(10);
+	}
+	
+	@Test
+	public void testReadsSeeOwnWrites() {
+		SlowTarget target = new SlowTarget();
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 100, 60000);
+		proxy.setText(OTHER);
+		assertEquals( proxy.getText(), OTHER );
+		assertEquals( target.getText(), TEXT );
+		assertEquals( target.writes.get(), 0 );
+	}
+	
+	@Test
+	public void testExplicitFlushCoalesces() {
+		SlowTarget target = new SlowTarget();
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 100, 60000);
+		for (int i = 0; i < 10; i++)
+			proxy.setText(OTHER + i);
+		WriteBehindProxy.flush(proxy);
+		
+		assertEquals( target.getText(), OTHER + 9 );
+		assertEquals( target.writes.get(), 1 );
+		WriteBehindProxy.Stats stats = WriteBehindProxy.stats(proxy);
+		assertEquals( stats.getWrites(), 10 );
+		assertEquals( stats.getApplied(), 1 );
+		assertEquals( stats.getCoalescingRatio(), 10.0, 0 );
+	}
+	
+	@Test
+	public void testTimeTrigger() throws Exception {
+		SlowTarget target = new SlowTarget();
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 100, 20);
+		proxy.setText(OTHER);
+		await(target, OTHER);
+		assertEquals( target.getText(), OTHER );
+	}
+	
+	@Test
+	public void testSizeTrigger() throws Exception {
+		SlowTarget target = new SlowTarget();
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 1, 60000);
+		proxy.setText(OTHER);
+		await(target, OTHER);
+		assertEquals( target.getText(), OTHER );
+	}
+	
+	@Test
+	public void testObjectMethodsDoNotFlush() {
+		SlowTarget target = new SlowTarget();
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 100, 60000);
+		proxy.setText(OTHER);
+		assertEquals( proxy.toString(), TEXT );
+		assertEquals( target.getText(), TEXT );
+	}
+	
+	@Test
+	public void testFailedWriteIsRetained() {
+		final AtomicInteger attempts = new AtomicInteger();
+		TargetClass target = new TargetClass(TEXT) {
+			public void setText(String text) {
+				if (attempts.incrementAndGet() == 1)
+					throw new IllegalStateException("unavailable");
+				super.setText(text);
+			}
+		};
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 100, 60000);
+		proxy.setText(OTHER);
+		try {
+			WriteBehindProxy.flush(proxy);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals( proxy.getText(), OTHER );
+		}
+		WriteBehindProxy.flush(proxy);
+		assertEquals( target.getText(), OTHER );
+		assertEquals( WriteBehindProxy.stats(proxy).getFailures(), 1 );
+	}
+	
+	@Test
+	public void testClose() {
+		SlowTarget target = new SlowTarget();
+		ITargetClass proxy = WriteBehindProxy.create(ITargetClass.class, target, 100, 60000);
+		proxy.setText(OTHER);
+		WriteBehindProxy.close(proxy);
+		assertEquals( target.getText(), OTHER );
+		try {
+			proxy.setText(TEXT);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+}